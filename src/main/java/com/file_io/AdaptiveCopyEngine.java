@@ -0,0 +1,432 @@
+package com.file_io;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 自适应文件复制引擎,根据文件大小和通道类型在 transferTo、内存映射、直接缓冲区三种方式中选择
+ * Adaptive copy engine which picks transferTo, memory-mapped windows or direct-buffer copying based on the file size and
+ * the source/target channel types
+ * <p>
+ * 按文件大小分段选择方式. 分段可以通过 {@link #calibrate(File)} 在本机测量一次并持久化到属性文件,之后的实例直接加载.
+ * {@link FileUtil} 的文件复制通过 {@link #shared()} 进行,其分段从系统属性 {@value #LOCATION_PROPERTY} 指定的文件加载.
+ * The strategy is chosen per file size band. The bands can be measured once on the host with {@link #calibrate(File)}
+ * and persisted to a properties file, later instances load them from there. The file copies of {@link FileUtil} go
+ * through {@link #shared()}, which loads its bands from the file named by the {@value #LOCATION_PROPERTY} system
+ * property.
+ * </p>
+ * <p>
+ * 内存映射窗口没有显式解除映射的 API,窗口在不可达后由垃圾回收释放. 每次复制同一时刻只持有一个 64MB 窗口,
+ * 映射与写出交替进行,因此未释放的地址空间取决于 GC 的节奏而不是文件大小; 地址空间紧张时应提高 MAPPED 的分段下限.
+ * Mapped windows have no explicit unmap API, a window is unmapped by the garbage collector once it is unreachable. A
+ * copy holds a single 64MB window at a time, so the address space still mapped depends on the GC pace rather than on
+ * the file size; raise the MAPPED band where address space is tight.
+ * </p>
+ * @author Juanjuan
+ */
+public class AdaptiveCopyEngine {
+
+	/**
+	 * 复制方式
+	 * Copy strategy
+	 */
+	public enum Strategy {
+		/** {@link FileChannel#transferTo(long, long, WritableByteChannel)}, 由内核完成复制 | copied by the kernel */
+		TRANSFER_TO,
+		/** 按窗口映射源文件后写入目标 | source mapped in windows and written to the target */
+		MAPPED,
+		/** 通过直接缓冲区读写 | read and written through a direct buffer */
+		DIRECT_BUFFER
+	}
+
+	/** 共享实例的分段属性文件 | Bands properties file of the shared instance */
+	public static final String LOCATION_PROPERTY = "file-actions.copy-engine";
+
+	/** 分段键前缀,键为分段的上限(含),值为复制方式 | Band key prefix, keyed by the inclusive upper bound of the band */
+	static final String BAND_PREFIX = "band.";
+
+	private static final long KB = 1024;
+
+	private static final long MB = KB * 1024;
+
+	/** transferTo 单次最多传输 2MB, 与 {@link FileUtil#copyFile(File, File)} 一致 | 2MB per transferTo call, same as FileUtil */
+	private static final long TRANSFER_SLICE = 2 * MB;
+
+	private static final long MAPPED_WINDOW = 64 * MB;
+
+	private static final long[] CALIBRATION_SIZES = { 4 * KB, 64 * KB, MB, 16 * MB, 128 * MB };
+
+	private static final int CALIBRATION_ROUNDS = 3;
+
+	private static volatile AdaptiveCopyEngine shared;
+
+	private final File settings;
+
+	/** 分段上限(含)到复制方式,最后一段的上限为 Long.MAX_VALUE | Inclusive band upper bound to strategy, the last one is Long.MAX_VALUE */
+	private volatile NavigableMap<Long, Strategy> bands = defaultBands();
+
+	/**
+	 * Construct {@link AdaptiveCopyEngine} with the built-in bands, calibration results are kept in memory only
+	 */
+	public AdaptiveCopyEngine() {
+		this.settings = null;
+	}
+
+	/**
+	 * Construct {@link AdaptiveCopyEngine}
+	 * @param settings
+	 *            分段属性文件,存在时加载,不存在时使用默认分段; {@link #calibrate(File)} 的结果保存到此文件.
+	 *            例如 {@link #defaultSettingsFile()}
+	 *            bands properties file, loaded if it exists, built-in bands are used otherwise; {@link #calibrate(File)}
+	 *            saves its result here. See {@link #defaultSettingsFile()} for a per-user location
+	 * @throws IOException
+	 */
+	public AdaptiveCopyEngine(final File settings) throws IOException {
+		this.settings = settings;
+		if (settings.isFile()) {
+			final Properties properties = new Properties();
+			try (InputStream in = new FileInputStream(settings)) {
+				properties.load(in);
+			}
+			final NavigableMap<Long, Strategy> loaded = new TreeMap<>();
+			for (final String key : properties.stringPropertyNames()) {
+				if (key.startsWith(BAND_PREFIX)) {
+					loaded.put(Long.parseLong(key.substring(BAND_PREFIX.length())), Strategy.valueOf(properties.getProperty(key)));
+				}
+			}
+			if (!loaded.isEmpty()) {
+				// 最后一段延伸到无穷 | The last band extends to infinity
+				loaded.put(Long.MAX_VALUE, loaded.pollLastEntry().getValue());
+				this.bands = Collections.unmodifiableNavigableMap(loaded);
+			}
+		}
+	}
+
+	/**
+	 * 返回 {@link FileUtil} 使用的共享实例, 首次调用时加载 {@value #LOCATION_PROPERTY} 指定的分段文件, 未指定时使用默认分段
+	 * Returns the shared instance used by {@link FileUtil}, loading the bands file named by {@value #LOCATION_PROPERTY} on
+	 * first use, or using the built-in bands if the property is not set
+	 *
+	 * @return AdaptiveCopyEngine
+	 */
+	public static AdaptiveCopyEngine shared() {
+		AdaptiveCopyEngine engine = shared;
+		if (engine == null) {
+			synchronized (AdaptiveCopyEngine.class) {
+				engine = shared;
+				if (engine == null) {
+					final String location = System.getProperty(LOCATION_PROPERTY);
+					try {
+						engine = shared = location != null ? new AdaptiveCopyEngine(new File(location)) : new AdaptiveCopyEngine();
+					}
+					catch (final IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				}
+			}
+		}
+		return engine;
+	}
+
+	/**
+	 * @return 每个用户的默认分段属性文件 {@code ~/.file-actions/copy-engine.properties}
+	 *         per-user bands properties file {@code ~/.file-actions/copy-engine.properties}
+	 */
+	public static File defaultSettingsFile() {
+		return new File(System.getProperty("user.home"), ".file-actions" + File.separator + "copy-engine.properties");
+	}
+
+	/**
+	 * 默认分段: 64KB 以内直接缓冲区, 256MB 以内 transferTo, 更大的内存映射
+	 * Built-in bands: direct buffer up to 64KB, transferTo up to 256MB, mapped above
+	 */
+	private static NavigableMap<Long, Strategy> defaultBands() {
+		final NavigableMap<Long, Strategy> bands = new TreeMap<>();
+		bands.put(64 * KB, Strategy.DIRECT_BUFFER);
+		bands.put(256 * MB - 1, Strategy.TRANSFER_TO);
+		bands.put(Long.MAX_VALUE, Strategy.MAPPED);
+		return Collections.unmodifiableNavigableMap(bands);
+	}
+
+	/**
+	 * 选择复制方式
+	 * Select the copy strategy
+	 *
+	 * @param size
+	 *            待复制的字节数
+	 *            number of bytes to copy
+	 * @param in
+	 *            源通道
+	 *            source channel
+	 * @param out
+	 *            目标通道
+	 *            target channel
+	 * @return Strategy
+	 */
+	public Strategy select(final long size, final ReadableByteChannel in, final WritableByteChannel out) {
+		if (!(in instanceof FileChannel)) {
+			return Strategy.DIRECT_BUFFER;
+		}
+		if (!(out instanceof FileChannel)) {
+			// 目标为 socket/pipe 时 transferTo 可走 sendfile | transferTo can use sendfile for socket/pipe targets
+			return Strategy.TRANSFER_TO;
+		}
+		return select(size);
+	}
+
+	/**
+	 * 选择文件到文件复制的方式
+	 * Select the strategy for a file to file copy
+	 *
+	 * @param size
+	 *            待复制的字节数
+	 *            number of bytes to copy
+	 * @return Strategy
+	 */
+	public Strategy select(final long size) {
+		return this.bands.ceilingEntry(Math.max(0, size)).getValue();
+	}
+
+	/**
+	 * 复制文件到目标文件,若目标文件含有多级路径,则先创建路径
+	 * Copy the file to the destination file, creating the destination path first if needed
+	 *
+	 * @param from
+	 *            待复制的文件
+	 *            file to be copied
+	 * @param to
+	 *            目标文件
+	 *            destination file
+	 * @return 复制的字节数, 源文件不存在时返回 -1
+	 *         number of bytes copied, -1 if the source file does not exist
+	 * @throws IOException
+	 */
+	public long copy(final File from, final File to) throws IOException {
+		if (!from.exists()) {
+			return -1;
+		}
+		FileUtil.createFile(to);
+		try (FileChannel in = new FileInputStream(from).getChannel(); FileChannel out = new FileOutputStream(to).getChannel()) {
+			final long size = in.size();
+			return copy(in, size, out, select(size, in, out));
+		}
+	}
+
+	/**
+	 * 按指定方式从源通道复制 size 字节到目标通道
+	 * Copy size bytes from the source channel to the target channel with the given strategy
+	 *
+	 * @param in
+	 *            源通道,文件通道从当前位置开始
+	 *            source channel, file channels are read from their current position
+	 * @param size
+	 *            待复制的字节数
+	 *            number of bytes to copy
+	 * @param out
+	 *            目标通道
+	 *            target channel
+	 * @param strategy
+	 *            复制方式, MAPPED 与 TRANSFER_TO 要求源为 {@link FileChannel}
+	 *            copy strategy, MAPPED and TRANSFER_TO require a {@link FileChannel} source
+	 * @return 复制的字节数, 直接缓冲区方式下源提前结束时少于 size
+	 *         number of bytes copied, less than size if a direct buffer copy reaches the end of the source early
+	 * @throws IOException
+	 *             transferTo 或内存映射方式下源不足 size 字节
+	 *             the source holds fewer than size bytes with transferTo or mapped copying
+	 */
+	public long copy(final ReadableByteChannel in, final long size, final WritableByteChannel out, final Strategy strategy) throws IOException {
+		switch (strategy) {
+		case TRANSFER_TO:
+			return transferTo((FileChannel) in, size, out);
+		case MAPPED:
+			return mapped((FileChannel) in, size, out);
+		default:
+			return directBuffer(in, size, out);
+		}
+	}
+
+	private static long transferTo(final FileChannel in, final long size, final WritableByteChannel out) throws IOException {
+		final long start = in.position();
+		long position = start;
+		final long end = start + size;
+		while (position < end) {
+			final long transferred = in.transferTo(position, Math.min(TRANSFER_SLICE, end - position), out);
+			if (transferred <= 0) {
+				// 源文件被截断或目标不再接收 | Source truncated, or the target accepts no more
+				throw new IOException("transferTo made no progress at " + (position - start) + " of " + size + " bytes");
+			}
+			position += transferred;
+		}
+		in.position(position);
+		return position - start;
+	}
+
+	/**
+	 * 每次只映射一个窗口,窗口写完后即不可达,由 GC 解除映射
+	 * Maps one window at a time, each window becomes unreachable once written and is unmapped by the GC
+	 */
+	private static long mapped(final FileChannel in, final long size, final WritableByteChannel out) throws IOException {
+		final long start = in.position();
+		long position = start;
+		final long end = start + size;
+		while (position < end) {
+			final MappedByteBuffer window = in.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAPPED_WINDOW, end - position));
+			while (window.hasRemaining()) {
+				position += out.write(window);
+			}
+		}
+		in.position(position);
+		return position - start;
+	}
+
+	private static long directBuffer(final ReadableByteChannel in, final long size, final WritableByteChannel out) throws IOException {
+		final DirectBufferPool pool = DirectBufferPool.shared();
+		final DirectBufferPool.PooledBuffer pooled = pool.acquire(size);
+		final ByteBuffer buffer = pooled.buffer();
+		long copied = 0;
+		try {
+			while (copied < size) {
+				buffer.clear();
+				if (size - copied < buffer.capacity()) {
+					buffer.limit((int) (size - copied));
+				}
+				if (in.read(buffer) == -1) {
+					break;
+				}
+				buffer.flip();
+				while (buffer.hasRemaining()) {
+					copied += out.write(buffer);
+				}
+			}
+		}
+		finally {
+			pool.release(pooled);
+		}
+		return copied;
+	}
+
+	/**
+	 * 在指定目录下测量各复制方式的耗时,每个采样尺寸的最快方式覆盖其所在分段,并保存到属性文件(若有)
+	 * Measure every strategy in the given directory; the fastest strategy of every sampled size covers the band around it,
+	 * and the bands are saved to the properties file, if any
+	 * <p>
+	 * 相邻采样尺寸之间以几何中点为分界. 测量需要写入约 300MB 临时文件,应在目标设备上运行一次.
+	 * Neighbouring samples are split at their geometric midpoint. Calibration writes about 300MB of temporary files and
+	 * should be run once on the target device.
+	 * </p>
+	 *
+	 * @param workDir
+	 *            测量用的临时目录,应位于目标设备上
+	 *            scratch directory for the measurement, it should live on the target device
+	 * @return 每种尺寸下最快的方式
+	 *         the fastest strategy for each sampled size
+	 * @throws IOException
+	 */
+	public Map<Long, Strategy> calibrate(final File workDir) throws IOException {
+		FileUtil.createDirectoryRecursively(workDir.getAbsolutePath());
+		final File source = File.createTempFile("calibrate", ".src", workDir);
+		final File target = File.createTempFile("calibrate", ".dst", workDir);
+		final Map<Long, Strategy> fastest = new LinkedHashMap<>();
+		try {
+			for (final long size : CALIBRATION_SIZES) {
+				fill(source, size);
+				final Map<Strategy, Long> timings = new EnumMap<>(Strategy.class);
+				for (final Strategy strategy : Strategy.values()) {
+					long best = Long.MAX_VALUE;
+					for (int round = 0; round < CALIBRATION_ROUNDS; round++) {
+						best = Math.min(best, time(source, target, size, strategy));
+					}
+					timings.put(strategy, best);
+				}
+				Strategy winner = Strategy.TRANSFER_TO;
+				for (final Map.Entry<Strategy, Long> entry : timings.entrySet()) {
+					if (entry.getValue() < timings.get(winner)) {
+						winner = entry.getKey();
+					}
+				}
+				fastest.put(size, winner);
+			}
+		}
+		finally {
+			source.delete();
+			target.delete();
+		}
+
+		final NavigableMap<Long, Strategy> calibrated = new TreeMap<>();
+		for (int i = 0; i < CALIBRATION_SIZES.length; i++) {
+			final long upper = i + 1 < CALIBRATION_SIZES.length ? (long) Math.sqrt((double) CALIBRATION_SIZES[i] * CALIBRATION_SIZES[i + 1])
+					: Long.MAX_VALUE;
+			final Strategy winner = fastest.get(CALIBRATION_SIZES[i]);
+			// 相邻同方式的分段合并 | Merge neighbouring bands of the same strategy
+			final Map.Entry<Long, Strategy> last = calibrated.lastEntry();
+			if (last != null && last.getValue() == winner) {
+				calibrated.remove(last.getKey());
+			}
+			calibrated.put(upper, winner);
+		}
+		this.bands = Collections.unmodifiableNavigableMap(calibrated);
+		save();
+		return fastest;
+	}
+
+	private long time(final File source, final File target, final long size, final Strategy strategy) throws IOException {
+		try (FileChannel in = new FileInputStream(source).getChannel(); FileChannel out = new FileOutputStream(target).getChannel()) {
+			final long start = System.nanoTime();
+			copy(in, size, out, strategy);
+			out.force(false);
+			return System.nanoTime() - start;
+		}
+	}
+
+	private static void fill(final File file, final long size) throws IOException {
+		final byte[] chunk = new byte[(int) Math.min(size, MB)];
+		ThreadLocalRandom.current().nextBytes(chunk);
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.setLength(0);
+			for (long written = 0; written < size; written += chunk.length) {
+				raf.write(chunk, 0, (int) Math.min(chunk.length, size - written));
+			}
+		}
+	}
+
+	private void save() throws IOException {
+		if (this.settings == null) {
+			return;
+		}
+		final Properties properties = new Properties();
+		for (final Map.Entry<Long, Strategy> band : this.bands.entrySet()) {
+			properties.setProperty(BAND_PREFIX + band.getKey(), band.getValue().name());
+		}
+		FileUtil.createFile(this.settings);
+		try (OutputStream out = new FileOutputStream(this.settings)) {
+			properties.store(out, "AdaptiveCopyEngine calibration");
+		}
+	}
+
+	/**
+	 * @return 分段上限(含)到复制方式,最后一段的上限为 Long.MAX_VALUE
+	 *         inclusive band upper bound to strategy, the last band ends at Long.MAX_VALUE
+	 */
+	public NavigableMap<Long, Strategy> getBands() {
+		return this.bands;
+	}
+}
@@ -0,0 +1,429 @@
+package com.file_io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 复制任务调度器,按文件大小将复制任务分配到小文件通道和大文件通道
+ * Copy job scheduler which classifies copy requests by size and runs them on separate small-file and large-file lanes
+ * <p>
+ * 大文件独占少量线程,避免多个大数据流同时争抢磁盘;小文件使用更多线程,不会被单个大文件阻塞.
+ * Large files get a few threads so concurrent large streams do not thrash the disk, while small files get more threads
+ * and are never blocked behind a single large file.
+ * </p>
+ * <p>
+ * 目标目录在复制开始前批量创建. 每个目标设备(FileStore)可以配置独立的 {@link DeviceProfile}.
+ * Target directories are created in one batch before any file is copied. Each target device (FileStore) can be given
+ * its own {@link DeviceProfile}.
+ * </p>
+ * @author Juanjuan
+ */
+public class CopyJobScheduler {
+
+	private static final long MB = 1024 * 1024;
+
+	private final DeviceProfile defaultProfile;
+
+	private final Map<FileStore, DeviceProfile> profiles = new HashMap<>();
+
+	private final List<CopyJob> jobs = new ArrayList<>();
+
+	private final TreeSet<String> directories = new TreeSet<>();
+
+	/** 批量创建的目录,复制文件时不再检查 | Directories created in the batch, not checked again when copying files */
+	private final DirectoryCache directoryCache = new DirectoryCache();
+
+	/**
+	 * Construct {@link CopyJobScheduler} using {@link DeviceProfile#DEFAULT} for every device
+	 */
+	public CopyJobScheduler() {
+		this(DeviceProfile.DEFAULT);
+	}
+
+	/**
+	 * Construct {@link CopyJobScheduler}
+	 * @param defaultProfile
+	 *            profile used for devices without an explicit profile
+	 */
+	public CopyJobScheduler(final DeviceProfile defaultProfile) {
+		this.defaultProfile = defaultProfile;
+	}
+
+	/**
+	 * 为目标路径所在的设备设置调度参数
+	 * Set the lane configuration for the device the given target path lives on
+	 *
+	 * @param target
+	 *            任意位于该设备上的路径(可以尚不存在)
+	 *            any path on the device, it does not need to exist yet
+	 * @param profile
+	 *            设备调度参数
+	 *            lane configuration of the device
+	 * @throws IOException
+	 */
+	public synchronized void setProfile(final File target, final DeviceProfile profile) throws IOException {
+		this.profiles.put(fileStoreOf(target), profile);
+	}
+
+	/**
+	 * 提交复制请求,文件(夹)在 {@link #execute()} 时才真正复制
+	 * Submit a copy request, the file (folder) is only copied when {@link #execute()} is called
+	 *
+	 * @param from
+	 *            待复制的文件(夹), 不存在时忽略
+	 *            file (folder) to be copied, ignored if it does not exist
+	 * @param to
+	 *            目标文件(夹)
+	 *            destination file (folder)
+	 */
+	public synchronized void submit(final File from, final File to) {
+		if (!from.exists()) {
+			return;
+		}
+		if (from.isFile()) {
+			final File parent = to.getAbsoluteFile().getParentFile();
+			if (parent != null) {
+				this.directories.add(parent.getPath());
+			}
+			this.jobs.add(new CopyJob(from, to, from.length()));
+			return;
+		}
+		final File[] files = from.listFiles();
+		if (files == null) {
+			return;
+		}
+		this.directories.add(to.getAbsolutePath());
+		for (final File file : files) {
+			submit(file, new File(to, file.getName()));
+		}
+	}
+
+	/**
+	 * 执行所有已提交的复制请求,阻塞直到全部完成
+	 * Run every submitted copy request and block until all of them are done
+	 *
+	 * @return 各设备各通道的吞吐统计
+	 *         throughput statistics of each lane of each device
+	 * @throws IOException
+	 *             第一个失败的复制,其余失败作为 suppressed 附加
+	 *             the first failed copy, further failures are attached as suppressed
+	 */
+	public synchronized CopyReport execute() throws IOException {
+		createDirectories();
+
+		// 每个目标目录只查询一次设备 | One device lookup per target directory, each re-reads /proc/mounts on Linux
+		final Map<File, FileStore> stores = new HashMap<>();
+		final Map<FileStore, List<CopyJob>> byDevice = new LinkedHashMap<>();
+		for (final CopyJob job : this.jobs) {
+			final File parent = job.to.getAbsoluteFile().getParentFile();
+			FileStore store = stores.get(parent);
+			if (store == null) {
+				store = fileStoreOf(job.to);
+				stores.put(parent, store);
+			}
+			byDevice.computeIfAbsent(store, k -> new ArrayList<>()).add(job);
+		}
+		this.jobs.clear();
+
+		final CopyReport report = new CopyReport();
+		final List<ExecutorService> executors = new ArrayList<>();
+		final List<Future<?>> futures = new ArrayList<>();
+		try {
+			for (final Map.Entry<FileStore, List<CopyJob>> entry : byDevice.entrySet()) {
+				final DeviceProfile profile = this.profiles.getOrDefault(entry.getKey(), this.defaultProfile);
+				final String device = entry.getKey().name();
+				final LaneStats small = report.lane(entry.getKey(), "small");
+				final LaneStats large = report.lane(entry.getKey(), "large");
+				final ExecutorService smallLane = Executors.newFixedThreadPool(profile.smallLaneThreads, new LaneThreadFactory(device + "-small"));
+				final ExecutorService largeLane = Executors.newFixedThreadPool(profile.largeLaneThreads, new LaneThreadFactory(device + "-large"));
+				executors.add(smallLane);
+				executors.add(largeLane);
+
+				// 大文件优先提交,小文件按大小升序提交 | Large files go first, small files smallest first
+				final List<CopyJob> deviceJobs = entry.getValue();
+				Collections.sort(deviceJobs, (a, b) -> Long.compare(a.size, b.size));
+				for (int i = deviceJobs.size() - 1; i >= 0 && deviceJobs.get(i).size >= profile.smallFileThreshold; i--) {
+					futures.add(largeLane.submit(new LaneTask(deviceJobs.get(i), large, this.directoryCache)));
+				}
+				for (final CopyJob job : deviceJobs) {
+					if (job.size >= profile.smallFileThreshold) {
+						break;
+					}
+					futures.add(smallLane.submit(new LaneTask(job, small, this.directoryCache)));
+				}
+			}
+			awaitAll(futures);
+		}
+		finally {
+			for (final ExecutorService executor : executors) {
+				executor.shutdownNow();
+			}
+		}
+		return report;
+	}
+
+	/**
+	 * 按路径排序后一次性创建所有目标目录,父目录总在子目录之前
+	 * Create all target directories in one pass, sorted so that parents are always created before children
+	 */
+	private void createDirectories() throws IOException {
+		for (final String directory : this.directories) {
+			this.directoryCache.ensureDirectory(new File(directory));
+		}
+		this.directories.clear();
+	}
+
+	static void awaitAll(final List<Future<?>> futures) throws IOException {
+		IOException failure = null;
+		for (final Future<?> future : futures) {
+			try {
+				future.get();
+			}
+			catch (final ExecutionException e) {
+				final IOException cause = e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+				if (failure == null) {
+					failure = cause;
+				}
+				else {
+					failure.addSuppressed(cause);
+				}
+			}
+			catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while waiting for copy jobs", e);
+			}
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	/**
+	 * 返回路径所在的设备,路径不存在时使用最近的已存在上级目录
+	 * Returns the device of the path, falling back to the nearest existing ancestor when the path does not exist
+	 */
+	static FileStore fileStoreOf(final File file) throws IOException {
+		Path path = file.getAbsoluteFile().toPath();
+		while (path != null && !Files.exists(path)) {
+			path = path.getParent();
+		}
+		if (path == null) {
+			throw new IOException("No existing ancestor for " + file);
+		}
+		return Files.getFileStore(path);
+	}
+
+	/**
+	 * 设备调度参数
+	 * Lane configuration of a target device
+	 */
+	public static final class DeviceProfile {
+
+		/**
+		 * 默认参数: 1MB 以下为小文件,小文件 8 线程,大文件 1 线程
+		 * Defaults: files under 1MB are small, 8 small-file threads, 1 large-file thread
+		 */
+		public static final DeviceProfile DEFAULT = new DeviceProfile(MB, 8, 1);
+
+		final long smallFileThreshold;
+
+		final int smallLaneThreads;
+
+		final int largeLaneThreads;
+
+		/**
+		 * @param smallFileThreshold
+		 *            小于此字节数的文件走小文件通道
+		 *            files smaller than this many bytes go to the small-file lane
+		 * @param smallLaneThreads
+		 *            小文件通道线程数
+		 *            number of small-file lane threads
+		 * @param largeLaneThreads
+		 *            大文件通道线程数, 机械硬盘建议为1, NVMe 可以适当增加
+		 *            number of large-file lane threads, 1 for spinning disks, more for NVMe
+		 */
+		public DeviceProfile(final long smallFileThreshold, final int smallLaneThreads, final int largeLaneThreads) {
+			if (smallLaneThreads < 1 || largeLaneThreads < 1) {
+				throw new IllegalArgumentException("Lane thread count must be positive");
+			}
+			this.smallFileThreshold = smallFileThreshold;
+			this.smallLaneThreads = smallLaneThreads;
+			this.largeLaneThreads = largeLaneThreads;
+		}
+	}
+
+	/**
+	 * 复制结果,每个设备的每个通道一条统计
+	 * Copy result, one statistic per lane per device
+	 */
+	public static final class CopyReport {
+
+		/** 按设备本身区分,同名的两个挂载点(如两个 tmpfs)不会合并 | Keyed by the device itself, so two mounts of the same name stay apart */
+		private final Map<FileStore, Map<String, LaneStats>> lanes = new LinkedHashMap<>();
+
+		LaneStats lane(final FileStore device, final String lane) {
+			return this.lanes.computeIfAbsent(device, k -> new LinkedHashMap<>()).computeIfAbsent(lane, k -> new LaneStats(device + "/" + k));
+		}
+
+		/**
+		 * @return 每个设备以通道名为键的通道统计
+		 *         lane statistics of every device, keyed by lane name
+		 */
+		public Map<FileStore, Map<String, LaneStats>> getLanes() {
+			return Collections.unmodifiableMap(this.lanes);
+		}
+
+		@Override
+		public String toString() {
+			final StringBuilder sb = new StringBuilder();
+			for (final Map<String, LaneStats> device : this.lanes.values()) {
+				for (final LaneStats stats : device.values()) {
+					if (stats.getFiles() > 0) {
+						sb.append(stats).append(System.lineSeparator());
+					}
+				}
+			}
+			return sb.toString();
+		}
+	}
+
+	/**
+	 * 单个通道的吞吐统计
+	 * Throughput statistics of a single lane
+	 */
+	public static final class LaneStats {
+
+		private final String name;
+
+		private final LongAdder files = new LongAdder();
+
+		private final LongAdder bytes = new LongAdder();
+
+		private final AtomicLong firstStart = new AtomicLong(Long.MAX_VALUE);
+
+		private final AtomicLong lastEnd = new AtomicLong(Long.MIN_VALUE);
+
+		LaneStats(final String name) {
+			this.name = name;
+		}
+
+		void record(final long start, final long end, final long copied) {
+			this.files.increment();
+			this.bytes.add(copied);
+			this.firstStart.accumulateAndGet(start, Math::min);
+			this.lastEnd.accumulateAndGet(end, Math::max);
+		}
+
+		public String getName() {
+			return this.name;
+		}
+
+		public long getFiles() {
+			return this.files.sum();
+		}
+
+		public long getBytes() {
+			return this.bytes.sum();
+		}
+
+		/**
+		 * @return 通道从第一个文件开始到最后一个文件结束的耗时(纳秒)
+		 *         wall time from the start of the first file to the end of the last one, in nanoseconds
+		 */
+		public long getElapsedNanos() {
+			final long start = this.firstStart.get();
+			final long end = this.lastEnd.get();
+			return end < start ? 0 : end - start;
+		}
+
+		/**
+		 * @return 吞吐量,单位 MB/s
+		 *         throughput in MB/s
+		 */
+		public double getThroughput() {
+			final long elapsed = getElapsedNanos();
+			return elapsed == 0 ? 0 : (getBytes() / (double) MB) / (elapsed / 1e9);
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%s: %d files, %d bytes, %.1f ms, %.2f MB/s", this.name, getFiles(), getBytes(), getElapsedNanos() / 1e6,
+					getThroughput());
+		}
+	}
+
+	private static final class CopyJob {
+
+		final File from;
+
+		final File to;
+
+		final long size;
+
+		CopyJob(final File from, final File to, final long size) {
+			this.from = from;
+			this.to = to;
+			this.size = size;
+		}
+	}
+
+	private static final class LaneTask implements Callable<Void> {
+
+		private final CopyJob job;
+
+		private final LaneStats stats;
+
+		private final DirectoryCache directories;
+
+		LaneTask(final CopyJob job, final LaneStats stats, final DirectoryCache directories) {
+			this.job = job;
+			this.stats = stats;
+			this.directories = directories;
+		}
+
+		@Override
+		public Void call() throws IOException {
+			final long start = System.nanoTime();
+			final long copied = FileUtil.copyFile(this.job.from, this.job.to, this.directories);
+			this.stats.record(start, System.nanoTime(), Math.max(copied, 0));
+			return null;
+		}
+	}
+
+	private static final class LaneThreadFactory implements ThreadFactory {
+
+		private final String prefix;
+
+		private final AtomicInteger count = new AtomicInteger();
+
+		LaneThreadFactory(final String prefix) {
+			this.prefix = prefix;
+		}
+
+		@Override
+		public Thread newThread(final Runnable r) {
+			final Thread thread = new Thread(r, "copy-" + this.prefix + "-" + this.count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
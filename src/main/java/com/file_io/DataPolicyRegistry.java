@@ -0,0 +1,232 @@
+package com.file_io;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Registry of the data policies enforced on every {@link Software} record
+ * <p>
+ * Policies are loaded from the properties file named by the {@code file-actions.data-policies} system property, or
+ * else from {@code data-policies.properties} on the classpath, or else taken from {@link DataPolicy}. Each entry maps a
+ * software name to its type and version format:
+ * </p>
+ * <pre>
+ *   mysql=Database,#.#
+ *   python=Language,#.#.#
+ *   openssl=Library,regex:\d+\.\d+\.\d+[a-z]?
+ * </pre>
+ * <p>
+ * In a version format {@code #} stands for one or more digits and every other character must appear as is, exactly
+ * like the regular expression with {@code \d+} for every {@code #}; such formats are checked by a scanner without
+ * allocating. The scanner only backtracks where a {@code #} is followed by a digit or another {@code #}. Formats
+ * prefixed with {@code regex:} are compiled once. Names are case-insensitive and looked up by hash.
+ * </p>
+ * @author Juanjuan
+ */
+class DataPolicyRegistry {
+
+	static final String LOCATION_PROPERTY = "file-actions.data-policies";
+
+	private static final String RESOURCE = "/data-policies.properties";
+
+	private static final String REGEX_PREFIX = "regex:";
+
+	/** bound on the spellings remembered next to the canonical lower case names */
+	private static final int MAX_ALIASES = 1024;
+
+	private static volatile DataPolicyRegistry shared;
+
+	private final Map<String, Policy> policies;
+
+	private final Map<String, Policy> aliases = new ConcurrentHashMap<>();
+
+	/**
+	 * Construct {@link DataPolicyRegistry}
+	 * @param properties
+	 * 			software name to {@code type,version format}
+	 */
+	DataPolicyRegistry(final Properties properties) {
+		final Map<String, Policy> map = new HashMap<>();
+		for(final String name : properties.stringPropertyNames()){
+			final String value = properties.getProperty(name);
+			final int comma = value.indexOf(',');
+			if(comma < 0){
+				throw new IllegalArgumentException("Malformed data policy '" + name + "=" + value + "', expected type,version format");
+			}
+			final String key = name.trim().toLowerCase(Locale.ROOT);
+			map.put(key, new Policy(key, value.substring(0, comma).trim(), value.substring(comma + 1).trim()));
+		}
+		this.policies = Collections.unmodifiableMap(map);
+	}
+
+	/**
+	 * @return the registry loaded from the configured location, loaded once
+	 */
+	static DataPolicyRegistry shared(){
+		DataPolicyRegistry registry = shared;
+		if(registry == null){
+			synchronized(DataPolicyRegistry.class){
+				registry = shared;
+				if(registry == null){
+					registry = shared = load();
+				}
+			}
+		}
+		return registry;
+	}
+
+	private static DataPolicyRegistry load(){
+		final Properties properties = new Properties();
+		try{
+			final String location = System.getProperty(LOCATION_PROPERTY);
+			if(location != null){
+				try (Reader reader = new InputStreamReader(new FileInputStream(location), StandardCharsets.UTF_8)){
+					properties.load(reader);
+				}
+			}else{
+				try (InputStream in = DataPolicyRegistry.class.getResourceAsStream(RESOURCE)){
+					if(in != null){
+						properties.load(new InputStreamReader(in, StandardCharsets.UTF_8));
+					}else{
+						for(final DataPolicy policy : DataPolicy.values()){
+							properties.setProperty(policy.name(), policy.getType() + "," + REGEX_PREFIX + policy.getRegExp());
+						}
+					}
+				}
+			}
+		}catch(final IOException e){
+			throw new UncheckedIOException(e);
+		}
+		return new DataPolicyRegistry(properties);
+	}
+
+	/**
+	 * @param name
+	 * 			the software name, in any case
+	 * @return the policy of the software, null if it has none or the name is null
+	 */
+	Policy get(final String name){
+		if(name == null){
+			return null;
+		}
+		// the exact spelling is tried first so the common case does not lower case the name
+		Policy policy = this.aliases.get(name);
+		if(policy == null){
+			policy = this.policies.get(name.toLowerCase(Locale.ROOT));
+			if(policy != null && this.aliases.size() < MAX_ALIASES){
+				this.aliases.put(name, policy);
+			}
+		}
+		return policy;
+	}
+
+	/**
+	 * @return the policies by lower case software name
+	 */
+	Map<String, Policy> getPolicies(){
+		return this.policies;
+	}
+
+	/**
+	 * Data policy of a single software
+	 */
+	static final class Policy {
+
+		private final String name;
+
+		private final String type;
+
+		private final String format;
+
+		/** null for formats checked by the scanner */
+		private final Pattern pattern;
+
+		Policy(final String name, final String type, final String format) {
+			this.name = name;
+			this.type = type;
+			if(format.startsWith(REGEX_PREFIX)){
+				this.format = format.substring(REGEX_PREFIX.length());
+				this.pattern = Pattern.compile(this.format);
+			}else{
+				if(format.isEmpty()){
+					throw new IllegalArgumentException("Empty version format for '" + name + "'");
+				}
+				this.format = format;
+				this.pattern = null;
+			}
+		}
+
+		String getName(){
+			return this.name;
+		}
+
+		String getType(){
+			return this.type;
+		}
+
+		/**
+		 * @param version
+		 * 			the version to check
+		 * @return true if the whole version matches the format
+		 */
+		boolean isValidVersion(final String version){
+			if(this.pattern != null){
+				return this.pattern.matcher(version).matches();
+			}
+			return scan(this.format, 0, version, 0);
+		}
+
+		private static boolean scan(final String format, int f, final String version, int v){
+			while(f < format.length()){
+				final char expected = format.charAt(f++);
+				if(expected == '#'){
+					if(v == version.length() || !isDigit(version.charAt(v))){
+						return false;
+					}
+					int end = ++v;
+					while(end < version.length() && isDigit(version.charAt(end))){
+						end++;
+					}
+					if(f == format.length() || (format.charAt(f) != '#' && !isDigit(format.charAt(f)))){
+						// the next token cannot take a digit, so this one takes the whole run
+						v = end;
+					}else{
+						// the next token may take digits too, try the longest run first
+						for(; end >= v; end--){
+							if(scan(format, f, version, end)){
+								return true;
+							}
+						}
+						return false;
+					}
+				}else if(v < version.length() && version.charAt(v) == expected){
+					v++;
+				}else{
+					return false;
+				}
+			}
+			return v == version.length();
+		}
+
+		private static boolean isDigit(final char c){
+			return c >= '0' && c <= '9';
+		}
+
+		@Override
+		public String toString(){
+			return this.name + "=" + this.type + "," + (this.pattern != null ? REGEX_PREFIX : "") + this.format;
+		}
+	}
+}
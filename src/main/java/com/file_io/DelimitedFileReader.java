@@ -10,10 +10,14 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * File reader interface
@@ -69,6 +73,23 @@ public class DelimitedFileReader implements FileReader<Software>{
 		}
 	}
 
+	/**
+	 * Read lazily, records are parsed while the stream is consumed; closing the stream closes the source
+	 * 
+	 * @return
+	 * @author Juanjuan
+	 */
+	public Stream<Software> streamFile(){
+		final BufferedReader reader = new BufferedReader(this.source);
+		return reader.lines().map(line -> new Software(line.split(this.recordFieldDelimeter))).onClose(() -> {
+			try{
+				reader.close();
+			}catch(final IOException e){
+				throw new UncheckedIOException(e);
+			}
+		});
+	}
+
 	/**
 	 * Traverse through all installed softwares across all servers and prepare report of servers with out dated softwares
 	 * 
@@ -76,11 +97,26 @@ public class DelimitedFileReader implements FileReader<Software>{
 	 */
 	protected void evalOutDatedVersions(){
 		final Map<String, List<Software>> grouped = this.groupingService.groupRecordsBySoftware(this.readFile());
-		final List<String> outDated = new ArrayList<>();
-		grouped.forEach((k, v) -> {
-			Collections.sort(v);
-			v.stream().skip(1).filter(s -> !outDated.contains(s.getServer())).forEach(s -> outDated.add(s.getServer()));
-		});
+		this.writeReport(this.groupingService.outDatedServers(grouped));
+	}
+
+	/**
+	 * Same report as {@link #evalOutDatedVersions()} for inventories larger than the heap, records are grouped out of
+	 * core by the given service
+	 * 
+	 * @param service
+	 * 			the external grouping service
+	 * @author Juanjuan
+	 */
+	protected void evalOutDatedVersions(final ExternalGroupingService service){
+		try (Stream<Software> records = this.streamFile()){
+			this.writeReport(service.outDatedServers(records, null));
+		}catch(final IOException e){
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private void writeReport(final List<String> outDated){
 		System.out.println(outDated);
 		try{
 				Files.write(Paths.get("src/main/resources", "out.txt"),outDated);
@@ -92,18 +128,28 @@ public class DelimitedFileReader implements FileReader<Software>{
 }
 
 /**
- * Policy factory to enforce genuineness of data
+ * Policy factory to enforce genuineness of data, the built-in policies of {@link DataPolicyRegistry}
  * @author Juanjuan
  */
 enum DataPolicy {
-	MYSQL("Database","(\\d+)\\.(\\d+)"), UBUNTU("OS","(\\d+)\\.(\\d+)"), PYTHON("Language","(\\d+)\\.(\\d+).(\\d+)");
+	MYSQL("Database","(\\d+)\\.(\\d+)"), UBUNTU("OS","(\\d+)\\.(\\d+)"), PYTHON("Language","(\\d+)\\.(\\d+)\\.(\\d+)");
+
+	private static final Map<String, DataPolicy> BY_NAME = new HashMap<>();
+
+	static{
+		for(final DataPolicy v : DataPolicy.values()){
+			BY_NAME.put(v.name(), v);
+		}
+	}
 
 	private String type;
 	private String regExp;
+	private final Pattern pattern;
 
 	private DataPolicy(final String type, final String regExp) {
 		this.type = type;
 		this.regExp = regExp;
+		this.pattern = Pattern.compile(regExp);
 	}
 
 	String getRegExp(){
@@ -115,16 +161,11 @@ enum DataPolicy {
 	}
 
 	public static DataPolicy getSoftwareVersion(final String name){
-		for(final DataPolicy v : DataPolicy.values()){
-			if(v.name().equalsIgnoreCase(name)){
-				return v;
-			}
-		}
-		return null;
+		return name == null ? null : BY_NAME.get(name.toUpperCase(Locale.ROOT));
 	}
 
 	public boolean isValidVersion(final String value){
-		return Pattern.compile(this.getRegExp()).matcher(value).matches();
+		return this.pattern.matcher(value).matches();
 	}
 }
 
@@ -145,8 +186,22 @@ class GroupingService {
 	 * @author Juanjuan
 	 */
 	public Map<String, List<Software>> groupRecordsBySoftware(final List<Software> entities){
+		return this.groupRecordsBySoftware(entities.stream());
+	}
+
+	/**
+	 * Group installed software and their versions while the records are streamed
+	 * 
+	 * @param entities
+	 * 			the install softwares, in input order
+	 * @return
+	 * 			the map representing Software and corresponding versions installed
+	 * 
+	 * @author Juanjuan
+	 */
+	public Map<String, List<Software>> groupRecordsBySoftware(final Stream<Software> entities){
 		final Map<String, List<Software>> hashMap = new HashMap<>();
-		for(final Software s : entities){
+		entities.forEachOrdered(s -> {
 			if(!hashMap.containsKey(s.getName())){
 				final List<Software> list = new ArrayList<>();
 				list.add(s);
@@ -157,10 +212,53 @@ class GroupingService {
 					hashMap.get(s.getName()).add(s);
 				}
 			}
-		}
+		});
 
 		return hashMap;
 	}
+
+	/**
+	 * Append a grouping of later records to a grouping of earlier ones, the result is the grouping of both record lists
+	 * concatenated
+	 * 
+	 * @param grouped
+	 * 			the grouping of the earlier records, updated in place
+	 * @param later
+	 * 			the grouping of the later records, as returned by {@link #groupRecordsBySoftware(List)} and not sorted yet
+	 * 
+	 * @author Juanjuan
+	 */
+	public void merge(final Map<String, List<Software>> grouped, final Map<String, List<Software>> later){
+		later.forEach((name, versions) -> {
+			final List<Software> list = grouped.get(name);
+			if(list == null){
+				grouped.put(name, new ArrayList<>(versions));
+			}else{
+				// the first later version is dropped when it repeats the last earlier one, as a concatenated input would
+				final boolean repeated = list.get(list.size() - 1).getVersion().equals(versions.get(0).getVersion());
+				list.addAll(repeated ? versions.subList(1, versions.size()) : versions);
+			}
+		});
+	}
+
+	/**
+	 * Collect servers running anything but the latest version of a software
+	 * 
+	 * @param grouped
+	 * 			the map returned by {@link #groupRecordsBySoftware(List)}, each list is sorted in place
+	 * @return
+	 * 			the distinct out dated servers, in order of discovery
+	 * 
+	 * @author Juanjuan
+	 */
+	public List<String> outDatedServers(final Map<String, List<Software>> grouped){
+		final Set<String> outDated = new LinkedHashSet<>();
+		grouped.forEach((k, v) -> {
+			Collections.sort(v);
+			v.stream().skip(1).forEach(s -> outDated.add(s.getServer()));
+		});
+		return new ArrayList<>(outDated);
+	}
 }
 
 /**
@@ -182,11 +280,25 @@ class Software implements Comparable<Software> {
 		this.type = values[1].trim();
 		this.name = values[2].trim();
 		this.version = values[3].trim();
-		if(!DataPolicy.getSoftwareVersion(this.name).isValidVersion(this.version)){
+		final DataPolicyRegistry.Policy policy = DataPolicyRegistry.shared().get(this.name);
+		if(policy == null){
+			throw new IllegalArgumentException("Unknown software " + this.name);
+		}
+		if(!policy.isValidVersion(this.version)){
 			throw new IllegalArgumentException("Malformed version");
 		}
 	}
 
+	/**
+	 * Restore an already validated record, e.g. one read back from a spill file
+	 */
+	Software(final String server, final String type, final String name, final String version) {
+		this.server = server;
+		this.type = type;
+		this.name = name;
+		this.version = version;
+	}
+
 	/**
 	 * @return the server
 	 */
@@ -243,6 +355,11 @@ class Software implements Comparable<Software> {
 		return this.version;
 	}
 
+	@Override
+	public String toString(){
+		return this.server + "," + this.type + "," + this.name + "," + this.version;
+	}
+
 	@Override
 	public int compareTo(final Software o){
 		return Integer.valueOf(Arrays.asList(o.getVersion().split("\\.")).stream().mapToInt(part -> Integer.valueOf(part)).sum())
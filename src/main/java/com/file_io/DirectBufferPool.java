@@ -0,0 +1,188 @@
+package com.file_io;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 可复用直接缓冲区池,按容量分级,每级最多保留固定数量的缓冲区
+ * Pool of reusable direct buffers, split into size classes, each class retaining at most a fixed number of buffers
+ * <p>
+ * 命中时不分配任何内存;未命中时立即新建缓冲区而不等待,归还时若该级已满则直接丢弃. 池大小应与并发写入的线程数相当,
+ * 如服务器的工作线程数,共享池的大小可以通过系统属性 {@value #SIZE_PROPERTY} 设置. 未指定大小时按最近写入数据量的滑动平均选择容量.
+ * A hit allocates nothing; a miss allocates a new buffer at once rather than waiting, and the buffer is dropped on
+ * release if its class is already full. The pool should be sized to the number of concurrent writers, e.g. the worker
+ * threads of a server; the shared pool reads its size from the {@value #SIZE_PROPERTY} system property. Without a size
+ * hint the capacity follows a moving average of recently ingested sizes.
+ * </p>
+ * @author Juanjuan
+ */
+public class DirectBufferPool {
+
+	private static final int[] SIZE_CLASSES = { 8 * 1024, 64 * 1024, 256 * 1024, 1024 * 1024 };
+
+	/** 共享池每级的缓冲区数量 | Buffers per size class of the shared pool */
+	public static final String SIZE_PROPERTY = "file-actions.buffer-pool.size";
+
+	private static final DirectBufferPool SHARED = new DirectBufferPool(
+			Integer.getInteger(SIZE_PROPERTY, Math.max(4, Runtime.getRuntime().availableProcessors() * 2)));
+
+	private final List<ArrayBlockingQueue<PooledBuffer>> classes;
+
+	private final LongAdder hits = new LongAdder();
+
+	private final LongAdder misses = new LongAdder();
+
+	/** 最近写入数据量的滑动平均 | Moving average of recently ingested sizes */
+	private final AtomicLong averageSize = new AtomicLong(SIZE_CLASSES[1]);
+
+	/**
+	 * 返回进程内共享的缓冲区池
+	 * Returns the pool shared across the process
+	 *
+	 * @return DirectBufferPool
+	 */
+	public static DirectBufferPool shared() {
+		return SHARED;
+	}
+
+	/**
+	 * Construct {@link DirectBufferPool}
+	 * @param buffersPerClass
+	 *            每级最多保留的缓冲区数量,应不小于并发写入的线程数
+	 *            maximum number of buffers retained per size class, at least the number of concurrent writers
+	 */
+	public DirectBufferPool(final int buffersPerClass) {
+		if (buffersPerClass < 1) {
+			throw new IllegalArgumentException("buffersPerClass must be positive");
+		}
+		this.classes = new ArrayList<>(SIZE_CLASSES.length);
+		for (int i = 0; i < SIZE_CLASSES.length; i++) {
+			this.classes.add(new ArrayBlockingQueue<>(buffersPerClass));
+		}
+	}
+
+	/**
+	 * 借出一个缓冲区,用完必须通过 {@link #release(PooledBuffer)} 归还
+	 * Borrow a buffer, it must be given back with {@link #release(PooledBuffer)}
+	 *
+	 * @param sizeHint
+	 *            预计处理的字节数, 未知时传 -1
+	 *            expected number of bytes, -1 when unknown
+	 * @return 已 clear 的缓冲区
+	 *         a cleared buffer
+	 */
+	public PooledBuffer acquire(final long sizeHint) {
+		final int index = classIndex(sizeHint < 0 ? this.averageSize.get() : sizeHint);
+		final PooledBuffer pooled = this.classes.get(index).poll();
+		if (pooled == null) {
+			// 不等待其他线程归还 | Never wait for another thread to give one back
+			this.misses.increment();
+			return new PooledBuffer(index, ByteBuffer.allocateDirect(SIZE_CLASSES[index]));
+		}
+		this.hits.increment();
+		pooled.buffer.clear();
+		return pooled;
+	}
+
+	/**
+	 * 归还缓冲区,该级已满时丢弃
+	 * Give a buffer back, it is dropped if its size class is full
+	 *
+	 * @param pooled
+	 *            借出的缓冲区, null 时忽略
+	 *            borrowed buffer, ignored if null
+	 */
+	public void release(final PooledBuffer pooled) {
+		if (pooled != null) {
+			this.classes.get(pooled.sizeClass).offer(pooled);
+		}
+	}
+
+	/**
+	 * 记录一次写入的数据量,用于调整未指定大小时的缓冲区容量
+	 * Record the size of one ingestion, used to size buffers acquired without a hint
+	 *
+	 * @param size
+	 *            写入的字节数
+	 *            number of bytes ingested
+	 */
+	public void recordSize(final long size) {
+		long avg;
+		do {
+			avg = this.averageSize.get();
+		}
+		while (!this.averageSize.compareAndSet(avg, avg - (avg >> 3) + (size >> 3)));
+	}
+
+	private static int classIndex(final long size) {
+		for (int i = 0; i < SIZE_CLASSES.length - 1; i++) {
+			if (size <= SIZE_CLASSES[i]) {
+				return i;
+			}
+		}
+		return SIZE_CLASSES.length - 1;
+	}
+
+	/**
+	 * @return 命中次数
+	 *         number of acquisitions served from the pool
+	 */
+	public long getHits() {
+		return this.hits.sum();
+	}
+
+	/**
+	 * @return 未命中次数(即新分配次数), 持续增长说明池小于并发写入的线程数
+	 *         number of acquisitions that allocated a new buffer, steady growth means the pool is smaller than the number
+	 *         of concurrent writers
+	 */
+	public long getMisses() {
+		return this.misses.sum();
+	}
+
+	@Override
+	public String toString() {
+		return "DirectBufferPool[hits=" + getHits() + ", misses=" + getMisses() + ", averageSize=" + this.averageSize.get() + "]";
+	}
+
+	/**
+	 * 池中的缓冲区,附带一个同容量的堆数组,供从 InputStream 读取时中转
+	 * A pooled buffer, carrying a heap array of the same capacity used as staging when reading from an InputStream
+	 */
+	public static final class PooledBuffer {
+
+		private final int sizeClass;
+
+		private final ByteBuffer buffer;
+
+		private byte[] staging;
+
+		PooledBuffer(final int sizeClass, final ByteBuffer buffer) {
+			this.sizeClass = sizeClass;
+			this.buffer = buffer;
+		}
+
+		/**
+		 * @return 直接缓冲区
+		 *         the direct buffer
+		 */
+		public ByteBuffer buffer() {
+			return this.buffer;
+		}
+
+		/**
+		 * @return 与直接缓冲区同容量的堆数组,首次调用时创建并随缓冲区复用
+		 *         heap array of the same capacity, created on first use and reused with the buffer
+		 */
+		public byte[] staging() {
+			if (this.staging == null) {
+				this.staging = new byte[this.buffer.capacity()];
+			}
+			return this.staging;
+		}
+	}
+}
@@ -0,0 +1,116 @@
+package com.file_io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 批量创建文件时使用的目录缓存,记住已知存在的目录,避免对同一上级目录反复 stat
+ * Directory cache for bulk file creation, remembering directories known to exist so the same parents are not stat-ed
+ * over and over
+ * <p>
+ * 与 {@link FileUtil#createDirectoryRecursively(String)} 先逐级检查 exists() 不同,这里直接尝试 mkdir:
+ * 上级目录存在时只需一次系统调用,只有 mkdir 报告上级不存在时才向上创建. 可由多个写线程并发使用.
+ * Unlike {@link FileUtil#createDirectoryRecursively(String)}, which checks exists() on every level first, this tries
+ * mkdir directly: one system call when the parent exists, and ancestors are only created when mkdir reports a missing
+ * parent. Safe for concurrent use by parallel writers.
+ * </p>
+ * @author Juanjuan
+ */
+public class DirectoryCache {
+
+	private final Set<Path> known = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * 确保目录存在,必要时创建缺失的上级目录
+	 * Make sure the directory exists, creating missing ancestors if needed
+	 *
+	 * @param directory
+	 *            目录
+	 *            the directory
+	 * @throws IOException
+	 *             路径已存在但不是目录,或无法创建
+	 *             the path exists but is not a directory, or it cannot be created
+	 */
+	public void ensureDirectory(final File directory) throws IOException {
+		ensureDirectory(directory.getAbsoluteFile().toPath().normalize());
+	}
+
+	private void ensureDirectory(final Path directory) throws IOException {
+		if (this.known.contains(directory)) {
+			return;
+		}
+		try {
+			Files.createDirectory(directory);
+		}
+		catch (final FileAlreadyExistsException e) {
+			if (!Files.isDirectory(directory)) {
+				throw e;
+			}
+		}
+		catch (final NoSuchFileException e) {
+			final Path parent = directory.getParent();
+			if (parent == null) {
+				throw e;
+			}
+			ensureDirectory(parent);
+			try {
+				Files.createDirectory(directory);
+			}
+			catch (final FileAlreadyExistsException raced) {
+				// 其他线程刚刚创建 | Created by another thread in the meantime
+				if (!Files.isDirectory(directory)) {
+					throw raced;
+				}
+			}
+		}
+		this.known.add(directory);
+	}
+
+	/**
+	 * 创建文件及其缺失的上级目录,文件已存在时直接返回
+	 * Create the file and its missing parent directories, an existing file is returned as is
+	 *
+	 * @param file
+	 *            待创建的文件
+	 *            file to be created
+	 * @return File 创建的文件
+	 *         the file
+	 * @throws IOException
+	 */
+	public File createFile(final File file) throws IOException {
+		final Path path = file.getAbsoluteFile().toPath().normalize();
+		final Path parent = path.getParent();
+		if (parent != null) {
+			ensureDirectory(parent);
+		}
+		try {
+			Files.createFile(path);
+		}
+		catch (final FileAlreadyExistsException e) {
+			// 与 FileUtil.createFile 一致,已存在时直接返回 | Same as FileUtil.createFile, return an existing file as is
+		}
+		return file;
+	}
+
+	/**
+	 * 清空缓存,目录被外部删除后需要调用
+	 * Forget every cached directory, needed after directories were removed externally
+	 */
+	public void clear() {
+		this.known.clear();
+	}
+
+	/**
+	 * @return 已缓存的目录数量
+	 *         number of cached directories
+	 */
+	public int size() {
+		return this.known.size();
+	}
+}
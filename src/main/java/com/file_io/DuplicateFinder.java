@@ -0,0 +1,409 @@
+package com.file_io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 重复文件查找,分三个阶段逐步缩小候选范围
+ * Duplicate file finder which narrows candidates down in three stages
+ * <ol>
+ * <li>一次遍历按文件大小分桶 | one traversal buckets files by size</li>
+ * <li>同大小的文件只对开头一小段计算摘要 | files of equal size are hashed over a small prefix only</li>
+ * <li>只有前缀也相同的文件才计算完整摘要 | only files whose prefixes also match are hashed in full</li>
+ * </ol>
+ * 第二、三阶段并行执行. 已经互为硬链接的文件视为同一个文件.
+ * Stages two and three run in parallel. Files that are already hard links of each other count as one file.
+ * @author Juanjuan
+ */
+public class DuplicateFinder {
+
+	private static final String ALGORITHM = "SHA-256";
+
+	private final int threads;
+
+	private final int prefixSize;
+
+	/**
+	 * Construct {@link DuplicateFinder} with one thread per core and a 4KB prefix
+	 */
+	public DuplicateFinder() {
+		this(Runtime.getRuntime().availableProcessors(), 4 * 1024);
+	}
+
+	/**
+	 * Construct {@link DuplicateFinder}
+	 * @param threads
+	 *            摘要计算线程数
+	 *            number of hashing threads
+	 * @param prefixSize
+	 *            第二阶段计算摘要的字节数
+	 *            number of bytes hashed in the prefix stage
+	 */
+	public DuplicateFinder(final int threads, final int prefixSize) {
+		if (threads < 1 || prefixSize < 1) {
+			throw new IllegalArgumentException("threads and prefixSize must be positive");
+		}
+		this.threads = threads;
+		this.prefixSize = prefixSize;
+	}
+
+	/**
+	 * 查找目录(可多个)下的重复文件,空文件不计入
+	 * Find duplicate files under one or more directories, empty files are ignored
+	 *
+	 * @param roots
+	 *            待检查的目录
+	 *            directories to check
+	 * @return 重复文件报告
+	 *         duplicate report
+	 * @throws IOException
+	 */
+	public Report find(final File... roots) throws IOException {
+		final Map<Path, Long> lastModified = new HashMap<>();
+		final Map<Long, List<Path>> bySize = bucketBySize(lastModified, roots);
+
+		final ExecutorService executor = Executors.newFixedThreadPool(this.threads);
+		try {
+			final List<List<Path>> candidates = new ArrayList<>();
+			for (final Map.Entry<Long, List<Path>> bucket : bySize.entrySet()) {
+				if (bucket.getValue().size() > 1) {
+					candidates.add(bucket.getValue());
+				}
+			}
+
+			// 前缀摘要 | Prefix hash
+			final List<List<Path>> prefixGroups = regroup(executor, candidates, this.prefixSize);
+
+			// 只有超过前缀长度的文件需要完整摘要 | Only files longer than the prefix need a full hash
+			final List<List<Path>> needFull = new ArrayList<>();
+			final List<List<Path>> groups = new ArrayList<>();
+			for (final List<Path> group : prefixGroups) {
+				if (Files.size(group.get(0)) > this.prefixSize) {
+					needFull.add(group);
+				}
+				else {
+					groups.add(group);
+				}
+			}
+			groups.addAll(regroup(executor, needFull, Long.MAX_VALUE));
+
+			final Report report = new Report();
+			for (final List<Path> group : groups) {
+				final List<File> files = new ArrayList<>(group.size());
+				final long[] modified = new long[group.size()];
+				for (int i = 0; i < group.size(); i++) {
+					files.add(group.get(i).toFile());
+					modified[i] = lastModified.get(group.get(i));
+				}
+				report.add(files, Files.size(group.get(0)), modified);
+			}
+			return report;
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * 将每组重复文件中除第一个以外的文件替换为指向第一个文件的硬链接
+	 * Replace every file of each duplicate group except the first one with a hard link to the first one
+	 * <p>
+	 * 替换前比较大小和修改时间与 {@link Report} 记录的是否一致,查找之后变化过的文件(或整组,若第一个文件变化)跳过.
+	 * 先在同目录下以随机名称创建临时链接,再原子替换,替换过程中不会出现文件缺失,也不会删除任何原本存在的文件.
+	 * 无法创建硬链接(如跨文件系统)的文件跳过. 所有跳过的文件及原因记录在返回结果中.
+	 * Size and modification time are compared with the values recorded in the {@link Report} right before replacing; a
+	 * file that changed since {@link #find(File...)} is skipped, or the whole group if its first file changed. A temporary
+	 * link with a random name is created next to the duplicate and then moved over it atomically, so the file never goes
+	 * missing and no path that existed before is ever deleted. Files that cannot be linked, e.g. across file systems,
+	 * are skipped. Every skipped file is returned with the reason.
+	 * </p>
+	 *
+	 * @param report
+	 *            {@link #find(File...)} 的结果
+	 *            result of {@link #find(File...)}
+	 * @return 实际回收的字节数及跳过的文件
+	 *         bytes actually reclaimed and the files skipped
+	 * @throws IOException
+	 */
+	public LinkResult replaceWithHardLinks(final Report report) throws IOException {
+		final LinkResult result = new LinkResult();
+		for (int g = 0; g < report.groups.size(); g++) {
+			final List<File> group = report.groups.get(g);
+			final long size = report.sizes.get(g);
+			final long[] modified = report.lastModified.get(g);
+			final Path original = group.get(0).toPath();
+			if (!unchanged(original, size, modified[0])) {
+				for (final File file : group) {
+					result.skip(file, "changed since the duplicate search");
+				}
+				continue;
+			}
+			for (int i = 1; i < group.size(); i++) {
+				final Path target = group.get(i).toPath();
+				if (!unchanged(target, size, modified[i])) {
+					result.skip(group.get(i), "changed since the duplicate search");
+					continue;
+				}
+				final Path link;
+				try {
+					link = createTempLink(target, original);
+				}
+				catch (final IOException | UnsupportedOperationException e) {
+					result.skip(group.get(i), "unable to link: " + e);
+					continue;
+				}
+				try {
+					Files.move(link, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+				}
+				catch (final IOException e) {
+					// 只删除本方法刚创建的链接 | Only the link created just above is deleted
+					Files.deleteIfExists(link);
+					throw e;
+				}
+				result.reclaimedBytes += size;
+			}
+		}
+		return result;
+	}
+
+	private static boolean unchanged(final Path path, final long size, final long lastModified) throws IOException {
+		try {
+			final BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+			return attrs.isRegularFile() && attrs.size() == size && attrs.lastModifiedTime().toMillis() == lastModified;
+		}
+		catch (final NoSuchFileException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * 在 target 旁以随机名称创建指向 original 的硬链接,名称已存在时换一个,从不覆盖
+	 * Create a hard link to original next to target under a random name, picking another name if it exists, never overwriting
+	 */
+	private static Path createTempLink(final Path target, final Path original) throws IOException {
+		for (;;) {
+			final Path link = target.resolveSibling("." + target.getFileName() + "." + Long.toHexString(ThreadLocalRandom.current().nextLong())
+					+ ".link");
+			try {
+				return Files.createLink(link, original);
+			}
+			catch (final FileAlreadyExistsException e) {
+				// 名称冲突,重试 | Name taken, try another one
+			}
+		}
+	}
+
+	private static Map<Long, List<Path>> bucketBySize(final Map<Path, Long> lastModified, final File... roots) throws IOException {
+		final Map<Long, List<Path>> bySize = new HashMap<>();
+		final Set<Object> seenFiles = new HashSet<>();
+		for (final File root : roots) {
+			Files.walkFileTree(root.toPath(), new SimpleFileVisitor<Path>() {
+
+				@Override
+				public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) {
+					if (!attrs.isRegularFile() || attrs.size() == 0) {
+						return FileVisitResult.CONTINUE;
+					}
+					// 同一 inode 只计一次 | Count each inode once
+					final Object key = attrs.fileKey();
+					if (key == null || seenFiles.add(key)) {
+						bySize.computeIfAbsent(attrs.size(), k -> new ArrayList<>()).add(file);
+						lastModified.put(file, attrs.lastModifiedTime().toMillis());
+					}
+					return FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult visitFileFailed(final Path file, final IOException exc) {
+					return FileVisitResult.CONTINUE;
+				}
+			});
+		}
+		return bySize;
+	}
+
+	/**
+	 * 对各组文件并行计算摘要,按摘要细分为新的组,只保留至少两个文件的组
+	 * Hash the files of every group in parallel and split the groups by hash, keeping groups of at least two files
+	 */
+	private static List<List<Path>> regroup(final ExecutorService executor, final List<List<Path>> groups, final long limit)
+			throws IOException {
+		final List<List<Future<ByteBuffer>>> hashes = new ArrayList<>(groups.size());
+		for (final List<Path> group : groups) {
+			final List<Future<ByteBuffer>> futures = new ArrayList<>(group.size());
+			for (final Path path : group) {
+				futures.add(executor.submit(() -> hash(path, limit)));
+			}
+			hashes.add(futures);
+		}
+		final List<List<Path>> result = new ArrayList<>();
+		for (int g = 0; g < groups.size(); g++) {
+			final Map<ByteBuffer, List<Path>> byHash = new LinkedHashMap<>();
+			for (int i = 0; i < groups.get(g).size(); i++) {
+				byHash.computeIfAbsent(get(hashes.get(g).get(i)), k -> new ArrayList<>()).add(groups.get(g).get(i));
+			}
+			for (final List<Path> group : byHash.values()) {
+				if (group.size() > 1) {
+					result.add(group);
+				}
+			}
+		}
+		return result;
+	}
+
+	private static ByteBuffer hash(final Path path, final long limit) throws IOException, NoSuchAlgorithmException {
+		final MessageDigest digest = MessageDigest.getInstance(ALGORITHM);
+		final DirectBufferPool pool = DirectBufferPool.shared();
+		final DirectBufferPool.PooledBuffer pooled = pool.acquire(Math.min(limit, Files.size(path)));
+		final ByteBuffer buffer = pooled.buffer();
+		try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+			long remaining = limit;
+			while (remaining > 0) {
+				buffer.clear();
+				if (remaining < buffer.capacity()) {
+					buffer.limit((int) remaining);
+				}
+				final int read = in.read(buffer);
+				if (read == -1) {
+					break;
+				}
+				buffer.flip();
+				digest.update(buffer);
+				remaining -= read;
+			}
+		}
+		finally {
+			pool.release(pooled);
+		}
+		return ByteBuffer.wrap(digest.digest());
+	}
+
+	private static <T> T get(final Future<T> future) throws IOException {
+		try {
+			return future.get();
+		}
+		catch (final ExecutionException e) {
+			throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+		}
+		catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while hashing", e);
+		}
+	}
+
+	/**
+	 * 重复文件报告
+	 * Duplicate report
+	 */
+	public static final class Report {
+
+		private final List<List<File>> groups = new ArrayList<>();
+
+		private final List<Long> sizes = new ArrayList<>();
+
+		/** 查找时各文件的修改时间,与 groups 一一对应 | Modification times seen by the search, parallel to groups */
+		private final List<long[]> lastModified = new ArrayList<>();
+
+		private long reclaimableBytes;
+
+		void add(final List<File> group, final long size, final long[] modified) {
+			this.groups.add(Collections.unmodifiableList(group));
+			this.sizes.add(size);
+			this.lastModified.add(modified);
+			this.reclaimableBytes += size * (group.size() - 1);
+		}
+
+		/**
+		 * @return 重复文件组,每组内容完全相同
+		 *         duplicate groups, the files of a group have identical content
+		 */
+		public List<List<File>> getGroups() {
+			return Collections.unmodifiableList(this.groups);
+		}
+
+		/**
+		 * @return 每组只保留一份时可回收的字节数
+		 *         bytes reclaimable by keeping a single copy per group
+		 */
+		public long getReclaimableBytes() {
+			return this.reclaimableBytes;
+		}
+
+		@Override
+		public String toString() {
+			final StringBuilder sb = new StringBuilder();
+			sb.append(this.groups.size()).append(" duplicate groups, ").append(this.reclaimableBytes).append(" bytes reclaimable")
+					.append(System.lineSeparator());
+			for (final List<File> group : this.groups) {
+				sb.append("  ").append(group).append(System.lineSeparator());
+			}
+			return sb.toString();
+		}
+	}
+
+	/**
+	 * {@link DuplicateFinder#replaceWithHardLinks(Report)} 的结果
+	 * Result of {@link DuplicateFinder#replaceWithHardLinks(Report)}
+	 */
+	public static final class LinkResult {
+
+		private final Map<File, String> skipped = new LinkedHashMap<>();
+
+		private long reclaimedBytes;
+
+		void skip(final File file, final String reason) {
+			this.skipped.put(file, reason);
+		}
+
+		/**
+		 * @return 实际回收的字节数
+		 *         number of bytes actually reclaimed
+		 */
+		public long getReclaimedBytes() {
+			return this.reclaimedBytes;
+		}
+
+		/**
+		 * @return 未替换的文件及原因
+		 *         files left in place, with the reason
+		 */
+		public Map<File, String> getSkipped() {
+			return Collections.unmodifiableMap(this.skipped);
+		}
+
+		@Override
+		public String toString() {
+			final StringBuilder sb = new StringBuilder();
+			sb.append(this.reclaimedBytes).append(" bytes reclaimed, ").append(this.skipped.size()).append(" files skipped")
+					.append(System.lineSeparator());
+			this.skipped.forEach((file, reason) -> sb.append("  ").append(file).append(": ").append(reason).append(System.lineSeparator()));
+			return sb.toString();
+		}
+	}
+}
@@ -0,0 +1,320 @@
+package com.file_io;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * 按扩展名对大量路径分组计数,扩展名键只创建一次并复用,分类单个路径时不产生垃圾对象
+ * Groups large numbers of paths by extension. Each extension key is created once and reused, classifying a path creates
+ * no garbage
+ * <p>
+ * 扩展名按 ASCII 忽略大小写比较,键为小写形式;没有扩展名的路径归入空字符串键. 实例不是线程安全的,
+ * 并行分类时每个线程使用一个实例,最后用 {@link #merge(ExtensionClassifier)} 合并.
+ * Extensions are compared ignoring ASCII case and keys are lower case; paths without an extension go to the empty key.
+ * Instances are not thread-safe, use one per thread and combine them with {@link #merge(ExtensionClassifier)}.
+ * </p>
+ * <pre>
+ * example:
+ *   classify("a/b/c.JPG")  --> "jpg"
+ *   classify("a/b.txt/c")  --> ""
+ * </pre>
+ * @author Juanjuan
+ */
+public class ExtensionClassifier {
+
+	private static final int INITIAL_CAPACITY = 64;
+
+	private String[] keys = new String[INITIAL_CAPACITY / 2];
+
+	private long[] counts = new long[INITIAL_CAPACITY / 2];
+
+	private int size;
+
+	/** CharSequence 查找表: 键序号 + 1, 0 表示空槽 | CharSequence lookup table: key index + 1, 0 is an empty slot */
+	private int[] charSlots = new int[INITIAL_CAPACITY];
+
+	private int[] charHashes = new int[INITIAL_CAPACITY];
+
+	/** UTF-8 查找表,保存原始(小写)字节以便比较 | UTF-8 lookup table, keeping the raw lower-cased bytes for comparison */
+	private int[] byteSlots = new int[INITIAL_CAPACITY];
+
+	private int[] byteHashes = new int[INITIAL_CAPACITY];
+
+	private byte[][] byteKeys = new byte[INITIAL_CAPACITY][];
+
+	private int byteSize;
+
+	/**
+	 * 分类一个路径
+	 * Classify a path
+	 *
+	 * @param path
+	 *            路径
+	 *            the path
+	 * @return 复用的扩展名键
+	 *         the shared extension key
+	 */
+	public String classify(final CharSequence path) {
+		return classify(path, 0, path.length());
+	}
+
+	/**
+	 * 分类路径 [start, end) 部分
+	 * Classify the [start, end) part of a path
+	 *
+	 * @param path
+	 *            路径
+	 *            the path
+	 * @param start
+	 *            起始位置(包含)
+	 *            start index, inclusive
+	 * @param end
+	 *            结束位置(不包含)
+	 *            end index, exclusive
+	 * @return 复用的扩展名键
+	 *         the shared extension key
+	 */
+	public String classify(final CharSequence path, final int start, final int end) {
+		final int dot = PathNames.indexOfExtension(path, start, end);
+		final int from = dot == -1 ? end : dot + 1;
+		int hash = 0;
+		for (int i = from; i < end; i++) {
+			hash = 31 * hash + lower(path.charAt(i));
+		}
+		final int mask = this.charSlots.length - 1;
+		for (int slot = mix(hash) & mask;; slot = (slot + 1) & mask) {
+			final int entry = this.charSlots[slot];
+			if (entry == 0) {
+				break;
+			}
+			if (this.charHashes[slot] == hash && matches(this.keys[entry - 1], path, from, end)) {
+				this.counts[entry - 1]++;
+				return this.keys[entry - 1];
+			}
+		}
+		final char[] chars = new char[end - from];
+		for (int i = from; i < end; i++) {
+			chars[i - from] = lower(path.charAt(i));
+		}
+		final int index = addKey(new String(chars));
+		this.counts[index]++;
+		return this.keys[index];
+	}
+
+	/**
+	 * 分类 UTF-8 编码的路径片段 [off, off + len)
+	 * Classify the UTF-8 encoded path slice [off, off + len)
+	 *
+	 * @param utf8
+	 *            UTF-8 编码的路径
+	 *            UTF-8 encoded path
+	 * @param off
+	 *            起始位置
+	 *            start offset
+	 * @param len
+	 *            字节数
+	 *            number of bytes
+	 * @return 复用的扩展名键
+	 *         the shared extension key
+	 */
+	public String classify(final byte[] utf8, final int off, final int len) {
+		final int end = off + len;
+		final int dot = PathNames.indexOfExtension(utf8, off, len);
+		final int from = dot == -1 ? end : dot + 1;
+		int hash = 0;
+		for (int i = from; i < end; i++) {
+			hash = 31 * hash + lower(utf8[i]);
+		}
+		int mask = this.byteSlots.length - 1;
+		int slot = mix(hash) & mask;
+		for (;; slot = (slot + 1) & mask) {
+			final int entry = this.byteSlots[slot];
+			if (entry == 0) {
+				break;
+			}
+			if (this.byteHashes[slot] == hash && matches(this.byteKeys[slot], utf8, from, end)) {
+				this.counts[entry - 1]++;
+				return this.keys[entry - 1];
+			}
+		}
+
+		// 新的字节序列,可能对应已有的键 | New byte sequence, it may still map to an existing key
+		final byte[] raw = new byte[end - from];
+		for (int i = from; i < end; i++) {
+			raw[i - from] = lower(utf8[i]);
+		}
+		final String key = new String(raw, StandardCharsets.UTF_8);
+		final int existing = find(key);
+		final int index = existing == -1 ? addKey(key) : existing;
+		if ((this.byteSize + 1) * 2 > this.byteSlots.length) {
+			resizeBytes();
+			mask = this.byteSlots.length - 1;
+		}
+		slot = mix(hash) & mask;
+		while (this.byteSlots[slot] != 0) {
+			slot = (slot + 1) & mask;
+		}
+		this.byteSlots[slot] = index + 1;
+		this.byteHashes[slot] = hash;
+		this.byteKeys[slot] = raw;
+		this.byteSize++;
+		this.counts[index]++;
+		return this.keys[index];
+	}
+
+	/**
+	 * 依次分类所有路径,并把每个路径连同其扩展名键交给 sink
+	 * Classify every path in turn and hand each one to the sink together with its extension key
+	 *
+	 * @param paths
+	 *            路径序列
+	 *            the paths
+	 * @param sink
+	 *            接收 (扩展名键, 路径), 可以为 null
+	 *            receives (extension key, path), may be null
+	 */
+	public <T extends CharSequence> void classifyAll(final Iterable<T> paths, final BiConsumer<String, ? super T> sink) {
+		for (final T path : paths) {
+			final String key = classify(path);
+			if (sink != null) {
+				sink.accept(key, path);
+			}
+		}
+	}
+
+	/**
+	 * 合并另一个实例的计数
+	 * Add the counts of another instance to this one
+	 *
+	 * @param other
+	 *            另一个实例
+	 *            the other instance
+	 */
+	public void merge(final ExtensionClassifier other) {
+		for (int i = 0; i < other.size; i++) {
+			final int existing = find(other.keys[i]);
+			final int index = existing == -1 ? addKey(other.keys[i]) : existing;
+			this.counts[index] += other.counts[i];
+		}
+	}
+
+	/**
+	 * @return 按首次出现顺序排列的扩展名计数
+	 *         extension counts in order of first appearance
+	 */
+	public Map<String, Long> getCounts() {
+		final Map<String, Long> result = new LinkedHashMap<>(this.size * 4 / 3 + 1);
+		for (int i = 0; i < this.size; i++) {
+			result.put(this.keys[i], this.counts[i]);
+		}
+		return result;
+	}
+
+	private int find(final String key) {
+		int hash = 0;
+		for (int i = 0; i < key.length(); i++) {
+			hash = 31 * hash + key.charAt(i);
+		}
+		final int mask = this.charSlots.length - 1;
+		for (int slot = mix(hash) & mask; this.charSlots[slot] != 0; slot = (slot + 1) & mask) {
+			if (this.charHashes[slot] == hash && this.keys[this.charSlots[slot] - 1].equals(key)) {
+				return this.charSlots[slot] - 1;
+			}
+		}
+		return -1;
+	}
+
+	private int addKey(final String key) {
+		if (this.size == this.keys.length) {
+			this.keys = Arrays.copyOf(this.keys, this.size * 2);
+			this.counts = Arrays.copyOf(this.counts, this.size * 2);
+		}
+		if ((this.size + 1) * 2 > this.charSlots.length) {
+			final int[] oldSlots = this.charSlots;
+			this.charSlots = new int[oldSlots.length * 2];
+			this.charHashes = new int[oldSlots.length * 2];
+			for (int i = 0; i < this.size; i++) {
+				insertChar(i);
+			}
+		}
+		final int index = this.size++;
+		this.keys[index] = key;
+		insertChar(index);
+		return index;
+	}
+
+	private void insertChar(final int index) {
+		final String key = this.keys[index];
+		int hash = 0;
+		for (int i = 0; i < key.length(); i++) {
+			hash = 31 * hash + key.charAt(i);
+		}
+		final int mask = this.charSlots.length - 1;
+		int slot = mix(hash) & mask;
+		while (this.charSlots[slot] != 0) {
+			slot = (slot + 1) & mask;
+		}
+		this.charSlots[slot] = index + 1;
+		this.charHashes[slot] = hash;
+	}
+
+	private void resizeBytes() {
+		final int[] oldSlots = this.byteSlots;
+		final int[] oldHashes = this.byteHashes;
+		final byte[][] oldKeys = this.byteKeys;
+		this.byteSlots = new int[oldSlots.length * 2];
+		this.byteHashes = new int[oldSlots.length * 2];
+		this.byteKeys = new byte[oldSlots.length * 2][];
+		final int mask = this.byteSlots.length - 1;
+		for (int i = 0; i < oldSlots.length; i++) {
+			if (oldSlots[i] != 0) {
+				int slot = mix(oldHashes[i]) & mask;
+				while (this.byteSlots[slot] != 0) {
+					slot = (slot + 1) & mask;
+				}
+				this.byteSlots[slot] = oldSlots[i];
+				this.byteHashes[slot] = oldHashes[i];
+				this.byteKeys[slot] = oldKeys[i];
+			}
+		}
+	}
+
+	private static boolean matches(final String key, final CharSequence path, final int from, final int end) {
+		if (key.length() != end - from) {
+			return false;
+		}
+		for (int i = from; i < end; i++) {
+			if (key.charAt(i - from) != lower(path.charAt(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean matches(final byte[] key, final byte[] path, final int from, final int end) {
+		if (key.length != end - from) {
+			return false;
+		}
+		for (int i = from; i < end; i++) {
+			if (key[i - from] != lower(path[i])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static char lower(final char c) {
+		return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+	}
+
+	private static byte lower(final byte b) {
+		return b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+	}
+
+	private static int mix(final int hash) {
+		return hash ^ (hash >>> 16);
+	}
+}
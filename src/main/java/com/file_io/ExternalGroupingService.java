@@ -0,0 +1,258 @@
+package com.file_io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+
+/**
+ * Out-of-core variant of {@link GroupingService} for inventories larger than the heap
+ * <p>
+ * Records are hash-partitioned by software name into spill files on local disk, so every record of a software lands in
+ * the same partition, in input order. Partitions are then grouped one at a time with
+ * {@link GroupingService#groupRecordsBySoftware(List)}, several in parallel as long as their estimated heap size fits
+ * in the memory budget. A partition estimated larger than the budget is split again with a different hash; a single
+ * software larger than the budget cannot be split and is grouped in memory regardless.
+ * </p>
+ * @author Juanjuan
+ */
+public class ExternalGroupingService {
+
+	private static final int MAX_DEPTH = 3;
+
+	/** rough heap cost of a record on top of its serialized size */
+	private static final int RECORD_OVERHEAD = 96;
+
+	private final File spillDir;
+
+	private final long memoryBudget;
+
+	private final int partitions;
+
+	private final int threads;
+
+	final GroupingService groupingService = new GroupingService();
+
+	/**
+	 * Construct {@link ExternalGroupingService}
+	 * @param spillDir
+	 * 			local directory for the spill files
+	 * @param memoryBudget
+	 * 			heap bytes the grouping may use for records
+	 * @param partitions
+	 * 			number of spill files per partitioning pass
+	 * @param threads
+	 * 			maximum number of partitions grouped in parallel
+	 */
+	public ExternalGroupingService(final File spillDir, final long memoryBudget, final int partitions, final int threads) {
+		if(memoryBudget < 1024 || partitions < 2 || threads < 1){
+			throw new IllegalArgumentException("memoryBudget must be at least 1KB, partitions at least 2, threads at least 1");
+		}
+		this.spillDir = spillDir;
+		this.memoryBudget = memoryBudget;
+		this.partitions = partitions;
+		this.threads = threads;
+	}
+
+	/**
+	 * Group installed software out of core and collect the servers with out dated software
+	 *
+	 * @param records
+	 * 			the install softwares, consumed once
+	 * @param sink
+	 * 			receives each software and its versions as produced by {@link GroupingService#groupRecordsBySoftware(List)},
+	 * 			sorted newest first; calls are serialized, may be null
+	 * @return
+	 * 			the distinct out dated servers, the same set as {@link GroupingService#outDatedServers(Map)} on the whole input
+	 * @throws IOException
+	 *
+	 * @author Juanjuan
+	 */
+	public List<String> outDatedServers(final Stream<Software> records, final BiConsumer<String, List<Software>> sink) throws IOException {
+		FileUtil.createDirectoryRecursively(this.spillDir.getAbsolutePath());
+		final Path work = Files.createTempDirectory(this.spillDir.toPath(), "grouping");
+		final Set<String> outDated = new LinkedHashSet<>();
+		final ExecutorService executor = Executors.newFixedThreadPool(this.threads);
+		try{
+			final Semaphore memory = new Semaphore(permits(this.memoryBudget));
+			final List<Future<?>> futures = new ArrayList<>();
+			for(final Partition partition : this.partition(records.iterator(), work, 0)){
+				futures.add(executor.submit(() -> {
+					this.process(partition, memory, outDated, sink);
+					return null;
+				}));
+			}
+			CopyJobScheduler.awaitAll(futures);
+		}finally{
+			executor.shutdownNow();
+			FileUtil.delete(work.toFile());
+		}
+		return new ArrayList<>(outDated);
+	}
+
+	/**
+	 * Spread the records over spill files by hash of the software name, keeping input order within each file
+	 */
+	private List<Partition> partition(final Iterator<Software> records, final Path dir, final int depth) throws IOException {
+		final Partition[] parts = new Partition[this.partitions];
+		// spill buffers share a small slice of the budget
+		final int bufferSize = (int) Math.max(512, Math.min(64 * 1024, this.memoryBudget / (4L * this.partitions)));
+		try{
+			while(records.hasNext()){
+				final Software s = records.next();
+				final int index = Math.floorMod(Integer.rotateLeft(s.getName().hashCode() * 0x9E3779B9, depth * 7), this.partitions);
+				if(parts[index] == null){
+					parts[index] = new Partition(Files.createTempFile(dir, depth + "-" + index + "-", ".spill").toFile(), depth, bufferSize);
+				}
+				parts[index].write(s);
+			}
+		}finally{
+			for(final Partition part : parts){
+				if(part != null){
+					part.close();
+				}
+			}
+		}
+		final List<Partition> result = new ArrayList<>();
+		for(final Partition part : parts){
+			if(part != null){
+				result.add(part);
+			}
+		}
+		return result;
+	}
+
+	private void process(final Partition partition, final Semaphore memory, final Set<String> outDated,
+			final BiConsumer<String, List<Software>> sink) throws IOException, InterruptedException {
+		final long estimate = partition.estimate();
+		if(estimate > this.memoryBudget && partition.depth < MAX_DEPTH && partition.count > 1){
+			// split further without holding memory, records are streamed from the spill file
+			final List<Partition> split;
+			try (PartitionReader reader = new PartitionReader(partition)){
+				split = this.partition(reader, partition.file.getParentFile().toPath(), partition.depth + 1);
+			}
+			Files.delete(partition.file.toPath());
+			for(final Partition sub : split){
+				this.process(sub, memory, outDated, sink);
+			}
+			return;
+		}
+
+		final int permits = Math.min(permits(estimate), permits(this.memoryBudget));
+		memory.acquire(permits);
+		try{
+			final List<Software> records = new ArrayList<>((int) Math.min(Integer.MAX_VALUE - 8, partition.count));
+			try (PartitionReader reader = new PartitionReader(partition)){
+				reader.forEachRemaining(records::add);
+			}
+			Files.delete(partition.file.toPath());
+			final Map<String, List<Software>> grouped = this.groupingService.groupRecordsBySoftware(records);
+			final List<String> servers = this.groupingService.outDatedServers(grouped);
+			synchronized(outDated){
+				outDated.addAll(servers);
+				if(sink != null){
+					grouped.forEach(sink);
+				}
+			}
+		}finally{
+			memory.release(permits);
+		}
+	}
+
+	private static int permits(final long bytes){
+		return (int) Math.min(Integer.MAX_VALUE, Math.max(1, bytes >> 10));
+	}
+
+	/**
+	 * One spill file
+	 */
+	private static final class Partition {
+
+		final File file;
+
+		final int depth;
+
+		private final DataOutputStream out;
+
+		long count;
+
+		Partition(final File file, final int depth, final int bufferSize) throws IOException {
+			this.file = file;
+			this.depth = depth;
+			this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), bufferSize));
+		}
+
+		void write(final Software s) throws IOException {
+			this.out.writeUTF(s.getServer());
+			this.out.writeUTF(s.getType());
+			this.out.writeUTF(s.getName());
+			this.out.writeUTF(s.getVersion());
+			this.count++;
+		}
+
+		void close() throws IOException {
+			this.out.close();
+		}
+
+		/**
+		 * @return estimated heap bytes of the partition once loaded
+		 */
+		long estimate(){
+			return this.file.length() * 2 + this.count * RECORD_OVERHEAD;
+		}
+	}
+
+	/**
+	 * Streams the records of a spill file back
+	 */
+	private static final class PartitionReader implements Iterator<Software>, AutoCloseable {
+
+		private final DataInputStream in;
+
+		private long remaining;
+
+		PartitionReader(final Partition partition) throws IOException {
+			this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(partition.file), 64 * 1024));
+			this.remaining = partition.count;
+		}
+
+		@Override
+		public boolean hasNext(){
+			return this.remaining > 0;
+		}
+
+		@Override
+		public Software next(){
+			try{
+				this.remaining--;
+				return new Software(this.in.readUTF(), this.in.readUTF(), this.in.readUTF(), this.in.readUTF());
+			}catch(final IOException e){
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			this.in.close();
+		}
+	}
+}
@@ -0,0 +1,42 @@
+package com.file_io;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * {@link FileUtil} 中被计量的文件操作
+ * File operations of {@link FileUtil} that are measured
+ * <p>
+ * 每类操作的计数注册为平台 MBean {@code com.file_io:type=FileOperations,name=<操作>}.
+ * The counters of every operation are registered as platform MBean {@code com.file_io:type=FileOperations,name=<operation>}.
+ * </p>
+ * @author Juanjuan
+ */
+public enum FileOperation {
+	CREATE, COPY, MOVE, DELETE, SIZE;
+
+	private final FileOperationCounters counters = new FileOperationCounters();
+
+	static {
+		for (final FileOperation operation : values()) {
+			try {
+				ManagementFactory.getPlatformMBeanServer().registerMBean(operation.counters,
+						new ObjectName("com.file_io:type=FileOperations,name=" + operation.name().toLowerCase(Locale.ROOT)));
+			}
+			catch (final JMException | SecurityException e) {
+				// 计数仍可在进程内读取 | Counters remain readable in process, e.g. when loaded twice by different class loaders
+			}
+		}
+	}
+
+	/**
+	 * @return 该操作的累计计数
+	 *         cumulative counters of the operation
+	 */
+	public FileOperationCounters counters() {
+		return this.counters;
+	}
+}
@@ -0,0 +1,76 @@
+package com.file_io;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单类文件操作的累计计数,常开,只有几次无竞争的 {@link LongAdder} 累加
+ * Always-on cumulative counters of one kind of file operation, a handful of uncontended {@link LongAdder} additions
+ * per operation
+ * @author Juanjuan
+ */
+public class FileOperationCounters implements FileOperationCountersMXBean {
+
+	private final LongAdder count = new LongAdder();
+
+	private final LongAdder failures = new LongAdder();
+
+	private final LongAdder bytes = new LongAdder();
+
+	private final LongAdder entries = new LongAdder();
+
+	private final LongAdder totalTimeNanos = new LongAdder();
+
+	void record(final long nanos, final long bytes, final long entries, final boolean failed) {
+		this.count.increment();
+		if (failed) {
+			this.failures.increment();
+		}
+		if (bytes > 0) {
+			this.bytes.add(bytes);
+		}
+		if (entries > 0) {
+			this.entries.add(entries);
+		}
+		this.totalTimeNanos.add(nanos);
+	}
+
+	@Override
+	public long getCount() {
+		return this.count.sum();
+	}
+
+	@Override
+	public long getFailures() {
+		return this.failures.sum();
+	}
+
+	@Override
+	public long getBytes() {
+		return this.bytes.sum();
+	}
+
+	@Override
+	public long getEntries() {
+		return this.entries.sum();
+	}
+
+	@Override
+	public long getTotalTimeNanos() {
+		return this.totalTimeNanos.sum();
+	}
+
+	@Override
+	public void reset() {
+		this.count.reset();
+		this.failures.reset();
+		this.bytes.reset();
+		this.entries.reset();
+		this.totalTimeNanos.reset();
+	}
+
+	@Override
+	public String toString() {
+		return "count=" + getCount() + ", failures=" + getFailures() + ", bytes=" + getBytes() + ", entries=" + getEntries()
+				+ ", totalTimeNanos=" + getTotalTimeNanos();
+	}
+}
@@ -0,0 +1,45 @@
+package com.file_io;
+
+/**
+ * 单类文件操作的累计计数,通过 JMX 公开
+ * Cumulative counters of one kind of file operation, exposed through JMX
+ * @author Juanjuan
+ */
+public interface FileOperationCountersMXBean {
+
+	/**
+	 * @return 已完成的操作数,含失败
+	 *         number of completed operations, failures included
+	 */
+	long getCount();
+
+	/**
+	 * @return 抛出异常的操作数
+	 *         number of operations that threw
+	 */
+	long getFailures();
+
+	/**
+	 * @return 复制或统计的字节数
+	 *         bytes copied or measured
+	 */
+	long getBytes();
+
+	/**
+	 * @return 处理的文件及目录数
+	 *         files and directories processed
+	 */
+	long getEntries();
+
+	/**
+	 * @return 累计耗时,纳秒
+	 *         total time spent, in nanoseconds
+	 */
+	long getTotalTimeNanos();
+
+	/**
+	 * 清零所有计数
+	 * Reset every counter to zero
+	 */
+	void reset();
+}
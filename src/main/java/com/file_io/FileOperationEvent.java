@@ -0,0 +1,90 @@
+package com.file_io;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * {@link FileUtil} 操作的 Flight Recorder 事件,同时更新 {@link FileOperation} 的计数
+ * Flight Recorder event of a {@link FileUtil} operation, which also updates the counters of the {@link FileOperation}
+ * <p>
+ * 未录制时不分配事件,共用一个空实例,额外开销只有调用方的一次 nanoTime 和计数累加.
+ * When nothing is recording no event is allocated and a shared no-op instance is returned, the remaining cost is the
+ * caller's nanoTime and the counter additions.
+ * </p>
+ * @author Juanjuan
+ */
+@Name("com.file_io.FileOperation")
+@Label("File Operation")
+@Category({ "File Actions" })
+@Description("Copy, move, delete, size or create operation of FileUtil")
+class FileOperationEvent extends Event {
+
+	@Label("Operation")
+	String operation;
+
+	@Label("Path")
+	String path;
+
+	@Label("Target")
+	String target;
+
+	@Label("Bytes")
+	@DataAmount
+	long bytes;
+
+	@Label("Entries")
+	@Description("Files and directories processed")
+	long entries;
+
+	@Label("Strategy")
+	String strategy;
+
+	@Label("Failed")
+	boolean failed;
+
+	private static final EventType TYPE = EventType.getEventType(FileOperationEvent.class);
+
+	/** 未录制时共用的空事件,从不开始或提交 | Shared while nothing is recording, never begun nor committed */
+	private static final FileOperationEvent DISABLED = new FileOperationEvent();
+
+	static FileOperationEvent start() {
+		if (!TYPE.isEnabled()) {
+			return DISABLED;
+		}
+		final FileOperationEvent event = new FileOperationEvent();
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * 结束操作: 更新计数, 录制中且超过阈值时提交事件
+	 * End the operation: update the counters, and commit the event if recording and above the threshold
+	 *
+	 * @param startNanos
+	 *            操作开始时的 {@link System#nanoTime()}
+	 *            {@link System#nanoTime()} when the operation started
+	 */
+	void finish(final long startNanos, final FileOperation operation, final String path, final String target, final long bytes,
+			final long entries, final String strategy, final boolean failed) {
+		operation.counters().record(System.nanoTime() - startNanos, bytes, entries, failed);
+		if (this == DISABLED) {
+			return;
+		}
+		end();
+		if (shouldCommit()) {
+			this.operation = operation.name();
+			this.path = path;
+			this.target = target;
+			this.bytes = bytes;
+			this.entries = entries;
+			this.strategy = strategy;
+			this.failed = failed;
+			commit();
+		}
+	}
+}
@@ -0,0 +1,277 @@
+package com.file_io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 将目录树打包为单个文件,或将打包文件解包为目录树
+ * Pack a directory tree into a single file, or unpack a pack file back into a directory tree
+ * <p>
+ * 大量小文件的复制或上传主要耗费在逐个文件的元数据操作上,打包后变为一次大的顺序传输.
+ * 打包时多个线程预读文件内容,由单个写线程按顺序追加;解包时多个线程并行写出成员,超过 2GB 的成员用 transferTo
+ * 代替内存映射. 格式见 {@link PackArchive}.
+ * Copying or uploading many tiny files is dominated by per-file metadata cost, packing turns it into one large
+ * sequential transfer. Packing reads files ahead on several threads while a single writer appends them in order,
+ * unpacking writes members out in parallel, members over 2GB with transferTo instead of a mapping. See
+ * {@link PackArchive} for the layout.
+ * </p>
+ * @author Juanjuan
+ */
+public class FilePacker {
+
+	/** 不超过此大小的成员预读到内存,更大的成员由写线程直接 transferTo | Larger members are transferred by the writer directly */
+	private static final long READ_AHEAD_MAX = 1024 * 1024;
+
+	private final int threads;
+
+	/**
+	 * Construct {@link FilePacker} with one thread per core
+	 */
+	public FilePacker() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Construct {@link FilePacker}
+	 * @param threads
+	 *            预读/解包线程数
+	 *            number of read-ahead / unpack threads
+	 */
+	public FilePacker(final int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("threads must be positive");
+		}
+		this.threads = threads;
+	}
+
+	/**
+	 * 将目录下的所有文件及子目录打包为单个文件
+	 * Pack every file and subdirectory under the directory into a single file
+	 *
+	 * @param sourceDir
+	 *            待打包的目录
+	 *            directory to pack
+	 * @param packFile
+	 *            打包文件,已存在时覆盖
+	 *            pack file, overwritten if it exists
+	 * @return 成员数量
+	 *         number of members
+	 * @throws IOException
+	 */
+	public int pack(final File sourceDir, final File packFile) throws IOException {
+		final List<Member> members = new ArrayList<>();
+		collect(sourceDir, "", members);
+		// 打包文件位于源目录内时不打包自身 | A pack file inside the source directory does not pack itself
+		final File self = packFile.getAbsoluteFile();
+		members.removeIf(member -> member.file.getAbsoluteFile().equals(self));
+
+		FileUtil.createFile(packFile);
+		final ByteArrayOutputStream indexBytes = new ByteArrayOutputStream();
+		final ExecutorService executor = Executors.newFixedThreadPool(this.threads);
+		try (FileChannel out = FileChannel.open(packFile.toPath(), StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+				DataOutputStream index = new DataOutputStream(indexBytes)) {
+			final ByteBuffer header = ByteBuffer.allocate(PackArchive.HEADER_SIZE);
+			header.putInt(PackArchive.MAGIC).putInt(PackArchive.VERSION).flip();
+			writeFully(out, header);
+
+			// 预读窗口限制内存中的成员数量 | The read-ahead window bounds the members held in memory
+			final int window = this.threads * 4;
+			final Deque<Future<byte[]>> pending = new ArrayDeque<>(window);
+			int next = 0;
+			index.writeInt(members.size());
+			for (final Member member : members) {
+				while (next < members.size() && pending.size() < window) {
+					pending.add(executor.submit(members.get(next++)::readAhead));
+				}
+				final byte[] content = get(pending.poll());
+				final long offset = out.position();
+				final long length;
+				if (member.directory) {
+					length = -1;
+				}
+				else if (content != null) {
+					writeFully(out, ByteBuffer.wrap(content));
+					length = content.length;
+				}
+				else {
+					length = transfer(member.file, out);
+				}
+				index.writeUTF(member.path);
+				index.writeLong(offset);
+				index.writeLong(length);
+				index.writeLong(member.file.lastModified());
+			}
+			index.flush();
+
+			final long indexOffset = out.position();
+			writeFully(out, ByteBuffer.wrap(indexBytes.toByteArray()));
+			final ByteBuffer trailer = ByteBuffer.allocate(PackArchive.TRAILER_SIZE);
+			trailer.putLong(indexOffset).putInt(PackArchive.MAGIC).flip();
+			writeFully(out, trailer);
+		}
+		finally {
+			executor.shutdownNow();
+		}
+		return members.size();
+	}
+
+	/**
+	 * 将打包文件解包到目标目录
+	 * Unpack the pack file into the target directory
+	 *
+	 * @param packFile
+	 *            打包文件
+	 *            pack file
+	 * @param targetDir
+	 *            目标目录,不存在时创建
+	 *            target directory, created if it does not exist
+	 * @return 成员数量
+	 *         number of members
+	 * @throws IOException
+	 *             打包文件无效,或成员路径越出目标目录
+	 *             invalid pack file, or a member path escaping the target directory
+	 */
+	public int unpack(final File packFile, final File targetDir) throws IOException {
+		final Path root = targetDir.getAbsoluteFile().toPath().normalize();
+		try (PackArchive archive = new PackArchive(packFile)) {
+			// 目录成员先创建,文件的上级目录由写线程通过缓存创建 | Directory members first, file parents via the cache
+			final DirectoryCache directories = new DirectoryCache();
+			directories.ensureDirectory(root.toFile());
+			for (final PackArchive.Entry entry : archive.getEntries()) {
+				final Path target = resolve(root, entry.path);
+				if (entry.isDirectory()) {
+					directories.ensureDirectory(target.toFile());
+				}
+			}
+
+			final ExecutorService executor = Executors.newFixedThreadPool(this.threads);
+			try {
+				final List<Future<?>> futures = new ArrayList<>();
+				for (final PackArchive.Entry entry : archive.getEntries()) {
+					if (!entry.isDirectory()) {
+						futures.add(executor.submit(() -> {
+							final File target = resolve(root, entry.path).toFile();
+							directories.ensureDirectory(target.getParentFile());
+							try (FileChannel out = FileChannel.open(target.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+									StandardOpenOption.TRUNCATE_EXISTING)) {
+								if (entry.isMappable()) {
+									writeFully(out, archive.read(entry));
+								}
+								else {
+									archive.transferTo(entry, out);
+								}
+							}
+							target.setLastModified(entry.lastModified);
+							return null;
+						}));
+					}
+				}
+				CopyJobScheduler.awaitAll(futures);
+			}
+			finally {
+				executor.shutdownNow();
+			}
+			return archive.getEntries().size();
+		}
+	}
+
+	private static Path resolve(final Path root, final String memberPath) throws IOException {
+		final Path target = root.resolve(memberPath).normalize();
+		if (!target.startsWith(root) || target.equals(root)) {
+			throw new IOException("Illegal member path " + memberPath);
+		}
+		return target;
+	}
+
+	private static void collect(final File dir, final String prefix, final List<Member> members) {
+		final File[] files = dir.listFiles();
+		if (files == null) {
+			return;
+		}
+		for (final File file : files) {
+			final String path = prefix + file.getName();
+			if (file.isDirectory()) {
+				members.add(new Member(file, path, true));
+				collect(file, path + "/", members);
+			}
+			else {
+				members.add(new Member(file, path, false));
+			}
+		}
+	}
+
+	private static long transfer(final File file, final FileChannel out) throws IOException {
+		try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			final long size = in.size();
+			long position = 0;
+			while (position < size) {
+				final long transferred = in.transferTo(position, size - position, out);
+				if (transferred <= 0) {
+					break;
+				}
+				position += transferred;
+			}
+			return position;
+		}
+	}
+
+	private static void writeFully(final FileChannel out, final ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			out.write(buffer);
+		}
+	}
+
+	private static byte[] get(final Future<byte[]> future) throws IOException {
+		try {
+			return future.get();
+		}
+		catch (final ExecutionException e) {
+			throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+		}
+		catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while packing", e);
+		}
+	}
+
+	private static final class Member {
+
+		final File file;
+
+		final String path;
+
+		final boolean directory;
+
+		Member(final File file, final String path, final boolean directory) {
+			this.file = file;
+			this.path = path;
+			this.directory = directory;
+		}
+
+		/**
+		 * @return 小文件的内容, 目录或大文件返回 null
+		 *         content of a small file, null for a directory or a large file
+		 */
+		byte[] readAhead() throws IOException {
+			if (this.directory || this.file.length() > READ_AHEAD_MAX) {
+				return null;
+			}
+			return Files.readAllBytes(this.file.toPath());
+		}
+	}
+}
@@ -1,28 +1,27 @@
 package com.file_io;
 
-import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 
 /**
  * 文件操作工具类
  * File Manipulation Tool Class
+ * <p>
+ * 复制、移动、删除、统计大小及创建操作会更新 {@link FileOperation} 的计数,录制 Flight Recorder 时还会产生 {@code com.file_io.FileOperation} 事件.
+ * Copy, move, delete, size and create operations update the {@link FileOperation} counters, and emit
+ * {@code com.file_io.FileOperation} events while Flight Recorder is recording.
+ * </p>
  * @author Juanjuan
  */
 public class FileUtil {
 
-	private static final char UNIX_SEPARATOR = '/';
-
-	private static final char WINDOWS_SEPARATOR = '\\';
-
-	private static final char EXTENSION_SEPARATOR = '.';
-
 	/**
 	 * Returns the index of the last extension separator character, which is a dot. 返回最后"."的位置
 	 * <p>
@@ -39,9 +38,7 @@ public class FileUtil {
 		if (filename == null) {
 			return -1;
 		}
-		int extensionPos = filename.lastIndexOf(EXTENSION_SEPARATOR);
-		int lastSeparator = indexOfLastSeparator(filename);
-		return (lastSeparator > extensionPos ? -1 : extensionPos);
+		return PathNames.indexOfExtension(filename, 0, filename.length());
 	}
 
 	/**
@@ -60,9 +57,7 @@ public class FileUtil {
 		if (filename == null) {
 			return -1;
 		}
-		int lastUnixPos = filename.lastIndexOf(UNIX_SEPARATOR);
-		int lastWindowsPos = filename.lastIndexOf(WINDOWS_SEPARATOR);
-		return Math.max(lastUnixPos, lastWindowsPos);
+		return PathNames.indexOfLastSeparator(filename, 0, filename.length());
 	}
 
 	/**
@@ -153,7 +148,21 @@ public class FileUtil {
 	 * @return boolean
 	 */
 	public static boolean createDirectoryRecursively(String directory) {
+		final long started = System.nanoTime();
+		final FileOperationEvent event = FileOperationEvent.start();
+		boolean created = false;
+		boolean failed = true;
+		try {
+			created = mkdirs(directory);
+			failed = false;
+			return created;
+		}
+		finally {
+			event.finish(started, FileOperation.CREATE, directory, null, 0, created ? 1 : 0, null, failed);
+		}
+	}
 
+	private static boolean mkdirs(final String directory) {
 		if (directory == null) {
 			return false;
 		}
@@ -165,7 +174,7 @@ public class FileUtil {
 			pathname = new File(pathname.getAbsolutePath());
 		}
 		final String parent = pathname.getParent();
-		if ((parent == null) || !createDirectoryRecursively(parent)) {
+		if ((parent == null) || !mkdirs(parent)) {
 			return false;
 		}
 		pathname.mkdir();
@@ -213,12 +222,26 @@ public class FileUtil {
 	 * @throws IOException
 	 */
 	public static File createFile(final File file) throws IOException {
+		final long started = System.nanoTime();
+		final FileOperationEvent event = FileOperationEvent.start();
+		boolean created = false;
+		boolean failed = true;
+		try {
+			created = touch(file);
+			failed = false;
+			return file;
+		}
+		finally {
+			event.finish(started, FileOperation.CREATE, file.getPath(), null, 0, created ? 1 : 0, null, failed);
+		}
+	}
 
-		if (!file.exists()) {
-			createDirectoryRecursively(file.getParent());
-			file.createNewFile();
+	private static boolean touch(final File file) throws IOException {
+		if (file.exists()) {
+			return false;
 		}
-		return file;
+		mkdirs(file.getParent());
+		return file.createNewFile();
 	}
 
 	/**
@@ -278,34 +301,99 @@ public class FileUtil {
 	 * @throws IOException
 	 */
 	public static void copyFileforJava(final InputStream inputStream, final File to) throws IOException {
-		createFile(to);
-		OutputStream outputStream = null;
+		copyStreamToFile(inputStream, to, -1);
+	}
 
+	/**
+	 * 复制输入流到目标文件,使用共享的直接缓冲区池通过 FileChannel 写入,热路径上不分配内存.
+	 * Copy the input stream to the destination file through a FileChannel, using buffers from the shared
+	 * {@link DirectBufferPool} so the hot path allocates nothing.
+	 * <p>
+	 * 输入流为 FileInputStream 时其通道交给 {@link AdaptiveCopyEngine#shared()} 复制,否则经由缓冲区附带的堆数组中转.
+	 * 输入流在返回前关闭.
+	 * The channel of a FileInputStream is copied by {@link AdaptiveCopyEngine#shared()}, any other stream is staged
+	 * through the heap array carried by the pooled buffer. The input stream is closed before returning.
+	 * </p>
+	 * 
+	 * @param inputStream
+	 *            文件输入流, 为null时只创建或清空目标文件
+	 *            File input stream, the destination file is only created or truncated if NULL
+	 * @param to
+	 *            目标文件
+	 *            Destination file
+	 * @param sizeHint
+	 *            预计写入的字节数,用于选择缓冲区容量, 未知时传 -1
+	 *            expected number of bytes, used to pick the buffer capacity, -1 when unknown
+	 * @return 写入的字节数
+	 *         number of bytes written
+	 * @throws IOException
+	 */
+	public static long copyStreamToFile(final InputStream inputStream, final File to, final long sizeHint) throws IOException {
+		final long started = System.nanoTime();
+		final FileOperationEvent event = FileOperationEvent.start();
+		long written = -1;
+		boolean failed = true;
 		try {
-			// copy inputStream to outputStream
-			outputStream = new BufferedOutputStream(new FileOutputStream(to));
-			if (inputStream != null && outputStream != null) {
-				final byte[] buf = new byte[8 * 1024];
+			written = streamToFile(inputStream, to, sizeHint);
+			failed = false;
+			return written;
+		}
+		finally {
+			event.finish(started, FileOperation.COPY, null, to.getPath(), written, 1,
+					inputStream instanceof FileInputStream ? "channel" : "staged", failed);
+		}
+	}
+
+	private static long streamToFile(final InputStream inputStream, final File to, final long sizeHint) throws IOException {
+		touch(to);
+		if (inputStream == null) {
+			// 与原 copyFileforJava 一致,截断已有的目标文件 | Truncate an existing target, as copyFileforJava always did
+			FileChannel.open(to.toPath(), StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING).close();
+			return 0;
+		}
+		final DirectBufferPool pool = DirectBufferPool.shared();
+		final DirectBufferPool.PooledBuffer pooled = pool.acquire(sizeHint);
+		long written = 0;
+		try (InputStream in = inputStream;
+				FileChannel out = FileChannel.open(to.toPath(), StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			final ByteBuffer buffer = pooled.buffer();
+			if (in instanceof FileInputStream) {
+				final FileChannel channel = ((FileInputStream) in).getChannel();
+				// 普通文件按已知大小交给复制引擎,管道等大小为 0 的通道读到结束 | Regular files go through the engine, pipes are read to the end
+				final long remaining = channel.size() - channel.position();
+				if (remaining > 0) {
+					final AdaptiveCopyEngine engine = AdaptiveCopyEngine.shared();
+					written += engine.copy(channel, remaining, out, engine.select(remaining, channel, out));
+				}
+				while (channel.read(buffer) != -1) {
+					buffer.flip();
+					while (buffer.hasRemaining()) {
+						written += out.write(buffer);
+					}
+					buffer.clear();
+				}
+			}
+			else {
+				final byte[] staging = pooled.staging();
 				for (;;) {
-					final int numRead = inputStream.read(buf);
+					final int numRead = in.read(staging);
 					if (numRead == -1) {
 						break;
 					}
-					outputStream.write(buf, 0, numRead);
+					buffer.clear();
+					buffer.put(staging, 0, numRead);
+					buffer.flip();
+					while (buffer.hasRemaining()) {
+						written += out.write(buffer);
+					}
 				}
-				outputStream.flush();
 			}
-
 		}
 		finally {
-			if (inputStream != null) {
-				inputStream.close();
-			}
-			if (outputStream != null) {
-				outputStream.close();
-			}
+			pool.release(pooled);
 		}
-
+		pool.recordSize(written);
+		return written;
 	}
 
 	/**
@@ -313,8 +401,9 @@ public class FileUtil {
 	 * 复制文件到目标文件,若目标文件含有多级路径,则先创建路径,再复制文件到路径
 	 * Copy the file to the destination file, and if the destination file contains a multilevel path, create the path first, and then copy the file to the path
 	 * <p>
-	 * 这个文件复制方法是通过java.nio.channels.FileChannel中的transferTo方法来实现的,速度比较快.<br />
-	 * This method of file replication is achieved through the Transferto method in Java.nio.channels.FileChannel, which is faster.
+	 * 这个文件复制方法通过 {@link AdaptiveCopyEngine#shared()} 按文件大小在 transferTo、内存映射、直接缓冲区中选择,速度比较快.<br />
+	 * This method of file replication goes through {@link AdaptiveCopyEngine#shared()}, which picks transferTo, mapped or
+	 * direct-buffer copying by file size, which is faster.
 	 * 
 	 * 注意文件名,复制后文件名即目标文件,在使用时注意文件扩展名
 	 *  Note the file name, after copying the file name is the target file, pay attention to the file name extension when using
@@ -333,29 +422,58 @@ public class FileUtil {
 	 * @see java.nio.channels.FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)
 	 * 
 	 */
-	@SuppressWarnings("resource")
 	public static long copyFile(File from, File to) throws IOException, FileNotFoundException {
+		return copyFile(from, to, null);
+	}
+
+	/**
+	 * 复制文件到目标文件,目标文件的上级目录通过目录缓存创建,批量复制时避免对相同上级目录反复检查
+	 * Copy the file to the destination file, creating the destination's parents through the directory cache so bulk
+	 * copies do not check the same parents over and over
+	 * 
+	 * @param from
+	 *            待复制的文件
+	 *            Files to be copied
+	 * @param to
+	 *            目标文件
+	 *            Destination file
+	 * @param directories
+	 *            目录缓存, 为null时与 {@link #copyFile(File, File)} 相同
+	 *            Directory cache, same as {@link #copyFile(File, File)} if NULL
+	 * @return
+	 * @throws IOException
+	 * @throws FileNotFoundException
+	 */
+	public static long copyFile(File from, File to, DirectoryCache directories) throws IOException, FileNotFoundException {
+		final long started = System.nanoTime();
+		final FileOperationEvent event = FileOperationEvent.start();
+		long size = -1;
+		boolean failed = true;
+		try {
+			size = transferFile(from, to, directories);
+			failed = false;
+			return size;
+		}
+		finally {
+			event.finish(started, FileOperation.COPY, from.getPath(), to.getPath(), size, size < 0 ? 0 : 1,
+					AdaptiveCopyEngine.shared().select(size).name(), failed);
+		}
+	}
+
+	private static long transferFile(final File from, final File to, final DirectoryCache directories) throws IOException {
 		if (!from.exists()) {
 			return -1;
 		}
-		createFile(to);
-		FileChannel fcin = new FileInputStream(from).getChannel();
-		FileChannel fcout = new FileOutputStream(to).getChannel();
-		long size = fcin.size();
-
-		// 分批次向目标管道输入数据,每批次2MB | Input data into the target pipeline in batches, 2MB per batch
-		int length = 2097152;
-		while (true) {
-			if (fcin.position() == size) {
-				fcin.close();
-				fcout.close();
-				return size;
-			}
-			if ((size - fcin.position()) < 2097152) {
-				length = (int) (size - fcin.position());
-			}
-			fcin.transferTo(fcin.position(), length, fcout);
-			fcin.position(fcin.position() + length);
+		if (directories == null) {
+			touch(to);
+		}
+		else {
+			directories.createFile(to);
+		}
+		try (FileChannel fcin = new FileInputStream(from).getChannel(); FileChannel fcout = new FileOutputStream(to).getChannel()) {
+			final AdaptiveCopyEngine engine = AdaptiveCopyEngine.shared();
+			final long size = fcin.size();
+			return engine.copy(fcin, size, fcout, engine.select(size, fcin, fcout));
 		}
 	}
 
@@ -374,6 +492,48 @@ public class FileUtil {
 	 * 
 	 */
 	public static void copyDirectiory(final File sourceDir, final File targetDir) throws IOException {
+		copyDirectiory(sourceDir, targetDir, new DirectoryCache());
+	}
+
+	/**
+	 * 
+	 * 复制文件目录(包括子目录和文件)到目标路径,已创建的目标目录记录在目录缓存中
+	 * Copy file directories, including subdirectories and files, to the destination path, remembering created
+	 * destination directories in the directory cache
+	 * 
+	 * @param sourceDir
+	 *            源文件路径
+	 *            Source file path
+	 * @param targetDir
+	 *            目标文件路径
+	 *            Destination file path
+	 * @param directories
+	 *            目录缓存
+	 *            Directory cache
+	 * @throws IOException
+	 * 
+	 */
+	public static void copyDirectiory(final File sourceDir, final File targetDir, final DirectoryCache directories) throws IOException {
+		final long started = System.nanoTime();
+		final FileOperationEvent event = FileOperationEvent.start();
+		final long[] totals = new long[2];
+		boolean failed = true;
+		try {
+			copyTree(sourceDir, targetDir, directories, totals);
+			failed = false;
+		}
+		finally {
+			event.finish(started, FileOperation.COPY, sourceDir.getPath(), targetDir.getPath(), totals[0], totals[1], "transferTo", failed);
+		}
+	}
+
+	/**
+	 * @param totals
+	 *            累加复制的字节数与条目数
+	 *            accumulates bytes and entries copied
+	 */
+	private static void copyTree(final File sourceDir, final File targetDir, final DirectoryCache directories, final long[] totals)
+			throws IOException {
 		final File[] files = sourceDir.listFiles();
 		if (files == null) {
 			return;
@@ -381,15 +541,20 @@ public class FileUtil {
 
 		// 创建目标目录 | Create a destination directory
 		String targetPath = targetDir.getAbsolutePath();
-		createDirectoryRecursively(targetPath);
+		directories.ensureDirectory(targetDir);
+		totals[1]++;
 
 		for (int i = 0; i < files.length; i++) {
 			final File file = files[i];
 			if (file.isDirectory()) {
-				copyDirectiory(file, new File(targetPath + File.separator + file.getName()));
+				copyTree(file, new File(targetPath + File.separator + file.getName()), directories, totals);
 			}
 			else {
-				copyFile(file, new File(targetPath + File.separator + file.getName()));
+				final long size = transferFile(file, new File(targetPath + File.separator + file.getName()), directories);
+				if (size >= 0) {
+					totals[0] += size;
+					totals[1]++;
+				}
 			}
 		}
 	}
@@ -428,8 +593,24 @@ public class FileUtil {
 	 * 
 	 */
 	public static void move(final File from, final File to) throws IOException {
-		copy(from, to);
-		delete(from);
+		final long started = System.nanoTime();
+		final FileOperationEvent event = FileOperationEvent.start();
+		final long[] totals = new long[2];
+		boolean failed = true;
+		try {
+			if (from.isFile()) {
+				totals[0] = transferFile(from, to, null);
+				totals[1] = 1;
+			}
+			else if (from.exists()) {
+				copyTree(from, to, new DirectoryCache(), totals);
+			}
+			deleteTree(from, true);
+			failed = false;
+		}
+		finally {
+			event.finish(started, FileOperation.MOVE, from.getPath(), to.getPath(), totals[0], totals[1], "copyDelete", failed);
+		}
 	}
 
 	private static long KB = 1024;
@@ -512,10 +693,26 @@ public class FileUtil {
 	 * 			File size, Unit long
 	 */
 	public static long sizeOfDirectory(final File directory) {
+		final long started = System.nanoTime();
+		final FileOperationEvent event = FileOperationEvent.start();
+		final long[] entries = new long[1];
+		long size = -1;
+		boolean failed = true;
+		try {
+			size = sizeOf(directory, entries);
+			failed = false;
+			return size;
+		}
+		finally {
+			event.finish(started, FileOperation.SIZE, directory.getPath(), null, size, entries[0], null, failed);
+		}
+	}
 
+	private static long sizeOf(final File directory, final long[] entries) {
 		if (!directory.exists()) {
 			return -1;
 		}
+		entries[0]++;
 		if (!directory.isDirectory()) {
 			return directory.length();
 		}
@@ -528,9 +725,10 @@ public class FileUtil {
 		for (int i = 0; i < files.length; i++) {
 			final File file = files[i];
 			if (file.isDirectory()) {
-				size += sizeOfDirectory(file);
+				size += sizeOf(file, entries);
 			}
 			else {
+				entries[0]++;
 				size += file.length();
 			}
 		}
@@ -562,24 +760,43 @@ public class FileUtil {
 	 *             If Dir is a folder, self indicates whether to delete the folder itself
 	 */
 	public static void delete(final File dir, final boolean self) {
+		final long started = System.nanoTime();
+		final FileOperationEvent event = FileOperationEvent.start();
+		long deleted = 0;
+		boolean failed = true;
+		try {
+			deleted = deleteTree(dir, self);
+			failed = false;
+		}
+		finally {
+			event.finish(started, FileOperation.DELETE, dir.getPath(), null, 0, deleted, self ? "recursive" : "contents", failed);
+		}
+	}
+
+	/**
+	 * @return 删除的条目数
+	 *         number of entries deleted
+	 */
+	private static long deleteTree(final File dir, final boolean self) {
 		if (!dir.exists()) {
-			return;
+			return 0;
 		}
 		if (!dir.isDirectory()) {
-			dir.delete();
-			return;
+			return dir.delete() ? 1 : 0;
 		}
 
+		long deleted = 0;
 		final String[] list = dir.list();
 		if (list != null) {
 			for (final String element : list) {
 				final File child = new File(dir, element);
-				delete(child);
+				deleted += deleteTree(child, true);
 			}
 		}
-		if (self) {
-			dir.delete();
+		if (self && dir.delete()) {
+			deleted++;
 		}
+		return deleted;
 	}
 
 }
@@ -0,0 +1,141 @@
+package com.file_io;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Immutable in-memory index over one parsed software inventory
+ * <p>
+ * Records are indexed by server, software name and type (keys are case-insensitive) and the out dated report is
+ * computed once when the index is built. Names differing only in case, e.g. "MySQL" and "mysql", are grouped apart as
+ * {@link GroupingService} does, and their out dated servers are merged under the common key. Rendered responses are
+ * cached per index, so a rebuilt index starts with an empty cache.
+ * </p>
+ * @author Juanjuan
+ */
+class InventoryIndex {
+
+	private static final int MAX_CACHED_RESPONSES = 10000;
+
+	private final int size;
+
+	private final Map<String, List<Software>> byServer;
+
+	private final Map<String, List<Software>> byName;
+
+	private final Map<String, List<Software>> byType;
+
+	private final List<String> outDated;
+
+	private final Map<String, List<String>> outDatedBySoftware;
+
+	private final Map<String, String> responses = new ConcurrentHashMap<>();
+
+	/**
+	 * Build the index
+	 * @param records
+	 * 			the parsed inventory
+	 * @param groupingService
+	 * 			service used to compute the out dated report
+	 */
+	InventoryIndex(final List<Software> records, final GroupingService groupingService) {
+		this.size = records.size();
+		this.byServer = index(records, Software::getServer);
+		this.byName = index(records, Software::getName);
+		this.byType = index(records, Software::getType);
+
+		final Map<String, List<Software>> grouped = groupingService.groupRecordsBySoftware(records);
+		final Map<String, Set<String>> bySoftware = new HashMap<>();
+		grouped.forEach((name, versions) -> {
+			// newest first, everything after the head is out dated
+			final List<Software> sorted = new ArrayList<>(versions);
+			Collections.sort(sorted);
+			final Set<String> servers = bySoftware.computeIfAbsent(key(name), k -> new LinkedHashSet<>());
+			sorted.stream().skip(1).map(Software::getServer).forEach(servers::add);
+		});
+		this.outDatedBySoftware = new HashMap<>();
+		bySoftware.forEach((name, servers) -> this.outDatedBySoftware.put(name, Collections.unmodifiableList(new ArrayList<>(servers))));
+		this.outDated = Collections.unmodifiableList(groupingService.outDatedServers(grouped));
+	}
+
+	private static Map<String, List<Software>> index(final List<Software> records, final Function<Software, String> field) {
+		final Map<String, List<Software>> index = new LinkedHashMap<>();
+		for (final Software s : records) {
+			index.computeIfAbsent(key(field.apply(s)), k -> new ArrayList<>()).add(s);
+		}
+		index.replaceAll((k, v) -> Collections.unmodifiableList(v));
+		return index;
+	}
+
+	static String key(final String value){
+		return value.trim().toLowerCase(Locale.ROOT);
+	}
+
+	int size(){
+		return this.size;
+	}
+
+	List<Software> byServer(final String server){
+		return this.byServer.getOrDefault(key(server), Collections.emptyList());
+	}
+
+	List<Software> byName(final String name){
+		return this.byName.getOrDefault(key(name), Collections.emptyList());
+	}
+
+	List<Software> byType(final String type){
+		return this.byType.getOrDefault(key(type), Collections.emptyList());
+	}
+
+	/**
+	 * @return servers running anything but the latest version of any software
+	 */
+	List<String> outDated(){
+		return this.outDated;
+	}
+
+	/**
+	 * @param name
+	 * 			the software name
+	 * @return servers running anything but the latest version of the software
+	 */
+	List<String> outDated(final String name){
+		return this.outDatedBySoftware.getOrDefault(key(name), Collections.emptyList());
+	}
+
+	/**
+	 * Render a response once and serve it from the cache afterwards
+	 *
+	 * @param cacheKey
+	 * 			the request key, e.g. the route and its parameter
+	 * @param lines
+	 * 			the lines to render when the key is not cached yet
+	 * @return
+	 * 			the rendered response, one line per entry
+	 */
+	String render(final String cacheKey, final Function<InventoryIndex, List<?>> lines){
+		final String cached = this.responses.get(cacheKey);
+		if (cached != null) {
+			return cached;
+		}
+		final StringBuilder sb = new StringBuilder();
+		for (final Object line : lines.apply(this)) {
+			sb.append(line).append('\n');
+		}
+		final String response = sb.toString();
+		// bound the cache, arbitrary request keys must not grow it forever
+		if (this.responses.size() < MAX_CACHED_RESPONSES) {
+			this.responses.putIfAbsent(cacheKey, response);
+		}
+		return response;
+	}
+}
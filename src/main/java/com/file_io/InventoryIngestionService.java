@@ -0,0 +1,222 @@
+package com.file_io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * Ingest several inventory exports, e.g. one per data center, into a single out dated report
+ * <p>
+ * Every source is parsed and grouped on its own with {@link GroupingService#groupRecordsBySoftware(Stream)} on a
+ * bounded pool. The partial groupings are merged in source order with {@link GroupingService#merge(Map, Map)}, so the
+ * report is the one the concatenated sources would produce, and each out dated server is attributed to the source files
+ * it was found in.
+ * </p>
+ * @author Juanjuan
+ */
+public class InventoryIngestionService {
+
+	private final String delimeter;
+
+	private final int threads;
+
+	final GroupingService groupingService = new GroupingService();
+
+	/**
+	 * Construct {@link InventoryIngestionService}
+	 * @param delimeter
+	 * 			the record field delimiter
+	 * @param threads
+	 * 			maximum number of sources parsed in parallel
+	 */
+	public InventoryIngestionService(final String delimeter, final int threads) {
+		if(threads < 1){
+			throw new IllegalArgumentException("threads must be positive");
+		}
+		this.delimeter = delimeter;
+		this.threads = threads;
+	}
+
+	/**
+	 * Ingest inventory files; a directory contributes its regular files sorted by name
+	 *
+	 * @param sources
+	 * 			inventory files or directories of inventory files, in report order
+	 * @return
+	 * 			the merged report
+	 * @throws IOException
+	 * 			a source could not be read or holds a malformed record
+	 *
+	 * @author Juanjuan
+	 */
+	public Report ingest(final File... sources) throws IOException {
+		return this.ingest(Arrays.asList(sources));
+	}
+
+	/**
+	 * Ingest inventory files; a directory contributes its regular files sorted by name
+	 *
+	 * @param sources
+	 * 			inventory files or directories of inventory files, in report order
+	 * @return
+	 * 			the merged report
+	 * @throws IOException
+	 * 			a source could not be read or holds a malformed record
+	 *
+	 * @author Juanjuan
+	 */
+	public Report ingest(final Collection<File> sources) throws IOException {
+		final List<File> files = expand(sources);
+		final ExecutorService executor = Executors.newFixedThreadPool(this.threads);
+		try{
+			final List<Future<Partial>> futures = new ArrayList<>(files.size());
+			for(final File file : files){
+				futures.add(executor.submit(() -> this.parse(file)));
+			}
+
+			// merge in source order while later sources are still being parsed
+			final Map<String, List<Software>> grouped = new HashMap<>();
+			final Map<Software, File> origin = new IdentityHashMap<>();
+			final Map<File, Long> records = new LinkedHashMap<>();
+			for(int i = 0; i < files.size(); i++){
+				final File file = files.get(i);
+				final Partial partial = get(futures.get(i));
+				partial.grouped.values().forEach(versions -> versions.forEach(s -> origin.put(s, file)));
+				records.put(file, partial.records);
+				this.groupingService.merge(grouped, partial.grouped);
+			}
+
+			final List<String> outDated = this.groupingService.outDatedServers(grouped);
+			final Map<String, Set<File>> sourcesByServer = new LinkedHashMap<>();
+			for(final String server : outDated){
+				sourcesByServer.put(server, new LinkedHashSet<>());
+			}
+			// lists are sorted newest first by outDatedServers, everything after the head is out dated
+			grouped.values().forEach(versions -> versions.stream().skip(1).forEach(s -> sourcesByServer.get(s.getServer()).add(origin.get(s))));
+			return new Report(outDated, sourcesByServer, records);
+		}finally{
+			executor.shutdownNow();
+		}
+	}
+
+	private Partial parse(final File file) throws IOException {
+		final long[] count = new long[1];
+		try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8);
+				Stream<Software> records = new DelimitedFileReader(reader, this.delimeter).streamFile()){
+			final Map<String, List<Software>> grouped = this.groupingService.groupRecordsBySoftware(records.peek(s -> count[0]++));
+			return new Partial(grouped, count[0]);
+		}catch(final RuntimeException e){
+			throw new IOException("Unable to ingest '" + file + "': " + e.getMessage(), e);
+		}
+	}
+
+	private static List<File> expand(final Collection<File> sources) throws IOException {
+		final List<File> files = new ArrayList<>();
+		for(final File source : sources){
+			if(source.isDirectory()){
+				final File[] children = source.listFiles(File::isFile);
+				if(children == null){
+					throw new IOException("Unable to list '" + source + "'");
+				}
+				Arrays.sort(children);
+				files.addAll(Arrays.asList(children));
+			}else{
+				files.add(source);
+			}
+		}
+		return files;
+	}
+
+	private static <T> T get(final Future<T> future) throws IOException {
+		try{
+			return future.get();
+		}catch(final ExecutionException e){
+			throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+		}catch(final InterruptedException e){
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while ingesting", e);
+		}
+	}
+
+	/**
+	 * Grouping of a single source
+	 */
+	private static final class Partial {
+
+		final Map<String, List<Software>> grouped;
+
+		final long records;
+
+		Partial(final Map<String, List<Software>> grouped, final long records) {
+			this.grouped = grouped;
+			this.records = records;
+		}
+	}
+
+	/**
+	 * Merged out dated report over all sources
+	 * @author Juanjuan
+	 */
+	public static final class Report {
+
+		private final List<String> outDated;
+
+		private final Map<String, Set<File>> sourcesByServer;
+
+		private final Map<File, Long> records;
+
+		Report(final List<String> outDated, final Map<String, Set<File>> sourcesByServer, final Map<File, Long> records) {
+			this.outDated = Collections.unmodifiableList(outDated);
+			this.sourcesByServer = Collections.unmodifiableMap(sourcesByServer);
+			this.records = Collections.unmodifiableMap(records);
+		}
+
+		/**
+		 * @return the distinct out dated servers, as {@link GroupingService#outDatedServers(Map)} reports them
+		 */
+		public List<String> getOutDatedServers(){
+			return this.outDated;
+		}
+
+		/**
+		 * @param server
+		 * 			an out dated server
+		 * @return the source files the out dated installs of the server were found in
+		 */
+		public Set<File> getSources(final String server){
+			return Collections.unmodifiableSet(this.sourcesByServer.getOrDefault(server, Collections.emptySet()));
+		}
+
+		/**
+		 * @return number of records parsed per source file, in source order
+		 */
+		public Map<File, Long> getRecords(){
+			return this.records;
+		}
+
+		@Override
+		public String toString(){
+			final StringBuilder sb = new StringBuilder();
+			this.sourcesByServer.forEach((server, files) -> sb.append(server).append(' ').append(files).append(System.lineSeparator()));
+			return sb.toString();
+		}
+	}
+}
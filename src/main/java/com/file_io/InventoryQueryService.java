@@ -0,0 +1,153 @@
+package com.file_io;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import static spark.Spark.*;
+
+/**
+ * HTTP query service over the software inventory, using Spark like {@link UploadExample}
+ * <p>
+ * The inventory is parsed once with {@link DelimitedFileReader} into an {@link InventoryIndex} and every query is
+ * answered from memory. The input file is polled for changes; a changed file is parsed into a new index off the
+ * request path and swapped in atomically, requests in flight keep using the index they started with.
+ * </p>
+ * <pre>
+ *   GET /servers/:server    software installed on the server
+ *   GET /software/:name     installations of the software
+ *   GET /types/:type        installations of the software type
+ *   GET /outdated           servers running an out dated version of anything
+ *   GET /outdated/:name     servers running an out dated version of the software
+ * </pre>
+ * @author Juanjuan
+ */
+public class InventoryQueryService {
+
+	private final Path input;
+
+	private final String delimeter;
+
+	private final GroupingService groupingService = new GroupingService();
+
+	private final AtomicReference<InventoryIndex> index = new AtomicReference<>();
+
+	private final ScheduledExecutorService watcher = Executors.newSingleThreadScheduledExecutor(r -> {
+		final Thread thread = new Thread(r, "inventory-watcher");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private volatile long loadedModified;
+
+	private volatile long loadedSize;
+
+	public static void main(String[] args) {
+		final Path input = Paths.get(args.length > 0 ? args[0] : "src/main/resources/input.txt");
+		final int port = args.length > 1 ? Integer.parseInt(args[1]) : 4568;
+		final InventoryQueryService service = new InventoryQueryService(input, ",");
+		service.reload();
+		service.watch(5, TimeUnit.SECONDS);
+		service.start(port);
+	}
+
+	/**
+	 * Construct {@link InventoryQueryService}
+	 * @param input
+	 * 			the delimited inventory file
+	 * @param delimeter
+	 * 			the record field delimiter
+	 */
+	public InventoryQueryService(final Path input, final String delimeter) {
+		this.input = input;
+		this.delimeter = delimeter;
+	}
+
+	/**
+	 * Parse the input file into a new index and swap it in, concurrent reloads run one at a time so the index and the
+	 * recorded modification time and size always describe the same load
+	 *
+	 * @author Juanjuan
+	 */
+	public synchronized void reload(){
+		try{
+			final long modified = Files.getLastModifiedTime(this.input).toMillis();
+			final long size = Files.size(this.input);
+			try (Reader reader = Files.newBufferedReader(this.input, StandardCharsets.UTF_8)){
+				final InventoryIndex rebuilt = new InventoryIndex(new DelimitedFileReader(reader, this.delimeter).readFile(), this.groupingService);
+				this.index.set(rebuilt);
+			}
+			this.loadedModified = modified;
+			this.loadedSize = size;
+		}catch(final IOException e){
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Poll the input file and reload it when its modification time or size changes
+	 *
+	 * @param period
+	 * 			the polling period
+	 * @param unit
+	 * 			the unit of the polling period
+	 * @author Juanjuan
+	 */
+	public void watch(final long period, final TimeUnit unit){
+		this.watcher.scheduleWithFixedDelay(() -> {
+			try{
+				if(Files.getLastModifiedTime(this.input).toMillis() != this.loadedModified || Files.size(this.input) != this.loadedSize){
+					reload();
+					System.out.println("Reloaded inventory '" + this.input + "', " + this.index.get().size() + " records");
+				}
+			}catch(final IOException | RuntimeException e){
+				// keep serving the current index, a half written or malformed file is retried on the next poll
+				System.err.println("Unable to reload inventory '" + this.input + "': " + e);
+			}
+		}, period, period, unit);
+	}
+
+	/**
+	 * Start the HTTP routes on the given port, loading the inventory first unless {@link #reload()} already did
+	 *
+	 * @param port
+	 * 			the HTTP port
+	 * @author Juanjuan
+	 */
+	public void start(final int port){
+		if(this.index.get() == null){
+			reload();
+		}
+		port(port);
+		before((req, res) -> res.type("text/plain"));
+		get("/servers/:server", (req, res) -> respond("servers/", req.params(":server"), i -> i.byServer(req.params(":server"))));
+		get("/software/:name", (req, res) -> respond("software/", req.params(":name"), i -> i.byName(req.params(":name"))));
+		get("/types/:type", (req, res) -> respond("types/", req.params(":type"), i -> i.byType(req.params(":type"))));
+		get("/outdated", (req, res) -> respond("outdated", "", InventoryIndex::outDated));
+		get("/outdated/:name", (req, res) -> respond("outdated/", req.params(":name"), i -> i.outDated(req.params(":name"))));
+	}
+
+	/**
+	 * Stop the HTTP routes and the file watcher
+	 *
+	 * @author Juanjuan
+	 */
+	public void stop(){
+		this.watcher.shutdownNow();
+		spark.Spark.stop();
+	}
+
+	private String respond(final String route, final String param, final Function<InventoryIndex, List<?>> lines){
+		return this.index.get().render(route + InventoryIndex.key(param), lines);
+	}
+}
@@ -0,0 +1,274 @@
+package com.file_io;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 打包文件的随机读取,通过内存映射直接访问单个成员
+ * Random access to a pack file written by {@link FilePacker}, single members are read straight from a memory mapping
+ * <p>
+ * 格式 | Layout:
+ * <pre>
+ *   "FPAK" version:int
+ *   member data, concatenated
+ *   index: count:int { path:UTF offset:long length:long lastModified:long }
+ *   indexOffset:long "FPAK"
+ * </pre>
+ * 长度为 -1 的成员表示目录. A member of length -1 is a directory.
+ * </p>
+ * <p>
+ * 单个映射不能超过 2GB,更大的成员只能通过 {@link #transferTo(Entry, WritableByteChannel)} 读取.
+ * A single mapping cannot exceed 2GB, larger members can only be read with {@link #transferTo(Entry, WritableByteChannel)}.
+ * </p>
+ * @author Juanjuan
+ */
+public class PackArchive implements Closeable {
+
+	static final int MAGIC = 0x4650414b; // "FPAK"
+
+	static final int VERSION = 1;
+
+	static final int HEADER_SIZE = 8;
+
+	static final int TRAILER_SIZE = 12;
+
+	private final FileChannel channel;
+
+	private final Map<String, Entry> entries;
+
+	/** 文件小于 2GB 时整体映射一次 | Mapped once as a whole when the file is under 2GB */
+	private final MappedByteBuffer whole;
+
+	/**
+	 * 打开打包文件并读取索引
+	 * Open the pack file and read its index
+	 *
+	 * @param file
+	 *            打包文件
+	 *            pack file
+	 * @throws IOException
+	 *             不是有效的打包文件,或文件头、索引损坏
+	 *             not a valid pack file, or a corrupt header or index
+	 */
+	public PackArchive(final File file) throws IOException {
+		this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			final long size = this.channel.size();
+			if (size < HEADER_SIZE + TRAILER_SIZE) {
+				throw new IOException("Not a pack file: " + file);
+			}
+			final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			readFully(header, 0);
+			if (header.getInt(0) != MAGIC) {
+				throw new IOException("Not a pack file: " + file);
+			}
+			if (header.getInt(4) != VERSION) {
+				throw new IOException("Unsupported pack version " + header.getInt(4) + ": " + file);
+			}
+			final ByteBuffer trailer = ByteBuffer.allocate(TRAILER_SIZE);
+			readFully(trailer, size - TRAILER_SIZE);
+			final long indexOffset = trailer.getLong(0);
+			if (trailer.getInt(8) != MAGIC || indexOffset < HEADER_SIZE || indexOffset > size - TRAILER_SIZE
+					|| size - TRAILER_SIZE - indexOffset > Integer.MAX_VALUE) {
+				throw new IOException("Not a pack file: " + file);
+			}
+			final ByteBuffer index = ByteBuffer.allocate((int) (size - TRAILER_SIZE - indexOffset));
+			readFully(index, indexOffset);
+			this.entries = readIndex(index.array(), indexOffset);
+			this.whole = size <= Integer.MAX_VALUE ? this.channel.map(FileChannel.MapMode.READ_ONLY, 0, size) : null;
+		}
+		catch (final IOException | RuntimeException e) {
+			this.channel.close();
+			throw e;
+		}
+	}
+
+	private void readFully(final ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			final int read = this.channel.read(buffer, position);
+			if (read == -1) {
+				throw new IOException("Unexpected end of pack file");
+			}
+			position += read;
+		}
+	}
+
+	/**
+	 * 读取索引, 成员数据必须位于文件头与索引之间
+	 * Read the index, member data must lie between the header and the index
+	 */
+	private static Map<String, Entry> readIndex(final byte[] index, final long indexOffset) throws IOException {
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(index))) {
+			final int count = in.readInt();
+			// 每个成员至少占 2 字节路径长度加 3 个 long | Every member takes at least a 2 byte path length and 3 longs
+			if (count < 0 || count > index.length / 26) {
+				throw new IOException("Corrupt pack index: " + count + " members");
+			}
+			final Map<String, Entry> entries = new LinkedHashMap<>(count * 4 / 3 + 1);
+			for (int i = 0; i < count; i++) {
+				final Entry entry = new Entry(in.readUTF(), in.readLong(), in.readLong(), in.readLong());
+				if (entry.offset < HEADER_SIZE || entry.length < -1 || entry.offset > indexOffset
+						|| entry.length > indexOffset - entry.offset) {
+					throw new IOException("Corrupt pack index: member " + entry.path + " at " + entry.offset + " of " + entry.length + " bytes");
+				}
+				entries.put(entry.path, entry);
+			}
+			return entries;
+		}
+	}
+
+	/**
+	 * @return 按打包顺序排列的所有成员
+	 *         all members in pack order
+	 */
+	public Collection<Entry> getEntries() {
+		return Collections.unmodifiableCollection(this.entries.values());
+	}
+
+	/**
+	 * @param path
+	 *            成员相对路径,以 '/' 分隔
+	 *            relative member path, separated by '/'
+	 * @return 成员, 不存在时返回 null
+	 *         the member, null if there is no such member
+	 */
+	public Entry getEntry(final String path) {
+		return this.entries.get(path);
+	}
+
+	/**
+	 * 返回成员内容的只读视图,不复制数据
+	 * Returns a read-only view of the member content without copying it
+	 *
+	 * @param entry
+	 *            成员
+	 *            the member
+	 * @return 只读缓冲区, 目录返回空缓冲区
+	 *         read-only buffer, empty for a directory
+	 * @throws IOException
+	 *             成员超过 2GB,无法映射为单个缓冲区
+	 *             the member exceeds 2GB and cannot be mapped as a single buffer
+	 */
+	public ByteBuffer read(final Entry entry) throws IOException {
+		if (entry.isDirectory() || entry.length == 0) {
+			return ByteBuffer.allocate(0).asReadOnlyBuffer();
+		}
+		if (!entry.isMappable()) {
+			throw new IOException("Member " + entry.path + " of " + entry.length + " bytes is too large to map, use transferTo");
+		}
+		if (this.whole != null) {
+			final ByteBuffer view = this.whole.duplicate();
+			view.position((int) entry.offset).limit((int) (entry.offset + entry.length));
+			return view.slice().asReadOnlyBuffer();
+		}
+		return this.channel.map(FileChannel.MapMode.READ_ONLY, entry.offset, entry.length);
+	}
+
+	/**
+	 * 按路径读取成员内容
+	 * Read a member by path
+	 *
+	 * @param path
+	 *            成员相对路径
+	 *            relative member path
+	 * @return 只读缓冲区, 成员不存在时返回 null
+	 *         read-only buffer, null if there is no such member
+	 * @throws IOException
+	 */
+	public ByteBuffer read(final String path) throws IOException {
+		final Entry entry = this.entries.get(path);
+		return entry == null ? null : read(entry);
+	}
+
+	/**
+	 * 将成员内容写入通道,不经过映射,适用于任意大小的成员
+	 * Write the member content to the channel without mapping it, works for members of any size
+	 *
+	 * @param entry
+	 *            成员
+	 *            the member
+	 * @param target
+	 *            目标通道
+	 *            target channel
+	 * @return 写入的字节数, 目录返回 0
+	 *         number of bytes written, 0 for a directory
+	 * @throws IOException
+	 */
+	public long transferTo(final Entry entry, final WritableByteChannel target) throws IOException {
+		if (entry.isDirectory()) {
+			return 0;
+		}
+		long position = 0;
+		while (position < entry.length) {
+			final long transferred = this.channel.transferTo(entry.offset + position, entry.length - position, target);
+			if (transferred <= 0) {
+				throw new IOException("Unexpected end of pack file");
+			}
+			position += transferred;
+		}
+		return position;
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.channel.close();
+	}
+
+	/**
+	 * 打包文件中的一个成员
+	 * A member of the pack file
+	 */
+	public static final class Entry {
+
+		final String path;
+
+		final long offset;
+
+		final long length;
+
+		final long lastModified;
+
+		Entry(final String path, final long offset, final long length, final long lastModified) {
+			this.path = path;
+			this.offset = offset;
+			this.length = length;
+			this.lastModified = lastModified;
+		}
+
+		public String getPath() {
+			return this.path;
+		}
+
+		public long getLength() {
+			return this.length;
+		}
+
+		public long getLastModified() {
+			return this.lastModified;
+		}
+
+		public boolean isDirectory() {
+			return this.length < 0;
+		}
+
+		/**
+		 * @return 成员能否由 {@link PackArchive#read(Entry)} 映射为单个缓冲区
+		 *         whether {@link PackArchive#read(Entry)} can map the member as a single buffer
+		 */
+		public boolean isMappable() {
+			return this.length <= Integer.MAX_VALUE;
+		}
+	}
+}
@@ -0,0 +1,232 @@
+package com.file_io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 多线程分段复制单个大文件
+ * Multi-threaded range-split copy of a single very large file
+ * <p>
+ * 先按源文件大小预分配目标文件,再把文件切分为若干段,由多个线程各自以定位读写复制自己负责的段,
+ * 最后 fsync 后返回. 某一段失败时只重试该段,不会重新复制整个文件.
+ * The target is preallocated to the source size, the file is split into ranges and several workers copy their ranges
+ * with positional calls. The target is fsync-ed before returning. A failed range is retried on its own without
+ * restarting the whole copy.
+ * </p>
+ * @author Juanjuan
+ */
+public class ParallelFileCopier {
+
+	/**
+	 * 每段的复制方式
+	 * How each range is copied
+	 */
+	public enum Mode {
+		/** 每段使用独立的目标通道做 transferTo | transferTo into a dedicated target channel per range */
+		TRANSFER_TO,
+		/** 通过直接缓冲区定位读写 | positional read/write through a direct buffer */
+		POSITIONAL
+	}
+
+	private static final long MB = 1024 * 1024;
+
+	private static final long TRANSFER_SLICE = 2 * MB;
+
+	private final int workers;
+
+	private final long rangeSize;
+
+	private final int maxRetries;
+
+	private final Mode mode;
+
+	/**
+	 * Construct {@link ParallelFileCopier} with one worker per core, 64MB ranges, 3 retries and {@link Mode#TRANSFER_TO}
+	 */
+	public ParallelFileCopier() {
+		this(Runtime.getRuntime().availableProcessors(), 64 * MB, 3, Mode.TRANSFER_TO);
+	}
+
+	/**
+	 * Construct {@link ParallelFileCopier}
+	 * @param workers
+	 *            复制线程数
+	 *            number of copy threads
+	 * @param rangeSize
+	 *            每段字节数
+	 *            bytes per range
+	 * @param maxRetries
+	 *            每段失败后的最大重试次数
+	 *            maximum retries of a failed range
+	 * @param mode
+	 *            每段的复制方式
+	 *            how each range is copied
+	 */
+	public ParallelFileCopier(final int workers, final long rangeSize, final int maxRetries, final Mode mode) {
+		if (workers < 1 || rangeSize < 1 || maxRetries < 0) {
+			throw new IllegalArgumentException("workers and rangeSize must be positive, maxRetries must not be negative");
+		}
+		this.workers = workers;
+		this.rangeSize = rangeSize;
+		this.maxRetries = maxRetries;
+		this.mode = mode;
+	}
+
+	/**
+	 * 分段并行复制文件到目标文件,若目标文件含有多级路径,则先创建路径
+	 * Copy the file to the destination in parallel ranges, creating the destination path first if needed
+	 *
+	 * @param from
+	 *            待复制的文件
+	 *            file to be copied
+	 * @param to
+	 *            目标文件
+	 *            destination file
+	 * @return 复制的字节数, 源文件不存在时返回 -1
+	 *         number of bytes copied, -1 if the source file does not exist
+	 * @throws IOException
+	 *             某段重试后仍失败
+	 *             a range still failed after its retries
+	 */
+	public long copy(final File from, final File to) throws IOException {
+		if (!from.exists()) {
+			return -1;
+		}
+		FileUtil.createFile(to);
+		final long size = from.length();
+		// 预分配目标文件 | Preallocate the target
+		try (RandomAccessFile raf = new RandomAccessFile(to, "rw")) {
+			raf.setLength(size);
+		}
+
+		final int ranges = (int) ((size + this.rangeSize - 1) / this.rangeSize);
+		final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(this.workers, ranges)));
+		try {
+			final List<Future<Void>> futures = new ArrayList<>(ranges);
+			for (long start = 0; start < size; start += this.rangeSize) {
+				futures.add(executor.submit(new RangeTask(from, to, start, Math.min(this.rangeSize, size - start))));
+			}
+			for (final Future<Void> future : futures) {
+				await(future);
+			}
+			try (FileChannel out = FileChannel.open(to.toPath(), StandardOpenOption.WRITE)) {
+				out.force(true);
+			}
+		}
+		finally {
+			executor.shutdownNow();
+		}
+		return size;
+	}
+
+	private static void await(final Future<Void> future) throws IOException {
+		try {
+			future.get();
+		}
+		catch (final ExecutionException e) {
+			throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+		}
+		catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for range copy", e);
+		}
+	}
+
+	private final class RangeTask implements Callable<Void> {
+
+		private final File source;
+
+		private final File target;
+
+		private final long start;
+
+		private final long length;
+
+		RangeTask(final File source, final File target, final long start, final long length) {
+			this.source = source;
+			this.target = target;
+			this.start = start;
+			this.length = length;
+		}
+
+		/**
+		 * 每次尝试重新打开通道,被中断或关闭的通道不会在重试中复用
+		 * Every attempt opens its own channels, so a channel closed by an interrupt is never reused by a retry
+		 */
+		@Override
+		public Void call() throws IOException {
+			for (int attempt = 0;; attempt++) {
+				try (FileChannel rangeIn = FileChannel.open(this.source.toPath(), StandardOpenOption.READ);
+						FileChannel rangeOut = FileChannel.open(this.target.toPath(), StandardOpenOption.WRITE)) {
+					if (ParallelFileCopier.this.mode == Mode.TRANSFER_TO) {
+						transferRange(rangeIn, rangeOut);
+					}
+					else {
+						positionalRange(rangeIn, rangeOut);
+					}
+					return null;
+				}
+				catch (final IOException e) {
+					if (attempt >= ParallelFileCopier.this.maxRetries || Thread.currentThread().isInterrupted()) {
+						throw new IOException("Range [" + this.start + ", " + (this.start + this.length) + ") failed after " + (attempt + 1)
+								+ " attempts", e);
+					}
+				}
+			}
+		}
+
+		/**
+		 * transferTo 写入目标通道的当前位置,因此每段使用独立的目标通道
+		 * transferTo writes at the target channel's own position, so each range uses its own target channel
+		 */
+		private void transferRange(final FileChannel in, final FileChannel out) throws IOException {
+			out.position(this.start);
+			long position = this.start;
+			final long end = this.start + this.length;
+			while (position < end) {
+				final long transferred = in.transferTo(position, Math.min(TRANSFER_SLICE, end - position), out);
+				if (transferred <= 0) {
+					throw new IOException("Source truncated at " + position);
+				}
+				position += transferred;
+			}
+		}
+
+		private void positionalRange(final FileChannel in, final FileChannel out) throws IOException {
+			final DirectBufferPool pool = DirectBufferPool.shared();
+			final DirectBufferPool.PooledBuffer pooled = pool.acquire(this.length);
+			final ByteBuffer buffer = pooled.buffer();
+			long position = this.start;
+			final long end = this.start + this.length;
+			try {
+				while (position < end) {
+					buffer.clear();
+					if (end - position < buffer.capacity()) {
+						buffer.limit((int) (end - position));
+					}
+					if (in.read(buffer, position) == -1) {
+						throw new IOException("Source truncated at " + position);
+					}
+					buffer.flip();
+					while (buffer.hasRemaining()) {
+						position += out.write(buffer, position);
+					}
+				}
+			}
+			finally {
+				pool.release(pooled);
+			}
+		}
+	}
+}
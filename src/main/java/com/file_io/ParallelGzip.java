@@ -0,0 +1,531 @@
+package com.file_io;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+
+/**
+ * 多线程分块 gzip 压缩与解压,用于向慢速网络挂载点复制日志、导出文件等
+ * Parallel block gzip compression and decompression, for copying logs and exports onto slow network mounts
+ * <p>
+ * 输入按固定大小切分为独立的块,每块在各自线程中压缩为一个完整的 gzip 成员,按顺序写出.
+ * 多成员 gzip 是标准格式,gzip、zcat 以及 {@link GZIPInputStream} 都能直接解压.
+ * 每个成员头部的 FEXTRA 字段('F','A')记录该成员的总字节数,{@link #decompress(InputStream, OutputStream)} 据此并行解压;
+ * 没有该字段的普通 gzip 文件退回到串行解压. 成员大小或解压后大小超出本实例块大小所能产生的范围时,该成员同样串行解压,
+ * 不会按头部或尾部记录的大小分配内存.
+ * The input is split into independent fixed-size blocks, each compressed on its own thread into a complete gzip member
+ * and written in order. Multi-member gzip is standard, so gzip, zcat and {@link GZIPInputStream} read it directly.
+ * The FEXTRA field ('F','A') of each member header records the member's total size, which lets
+ * {@link #decompress(InputStream, OutputStream)} inflate members in parallel; plain gzip input falls back to serial
+ * decompression. A member whose recorded size or ISIZE is outside what this instance's block size can produce is
+ * inflated serially as well, so no buffer is ever sized from an untrusted header or trailer.
+ * </p>
+ * @author Juanjuan
+ */
+public class ParallelGzip {
+
+	private static final int GZIP_MAGIC = 0x8b1f;
+
+	private static final int FEXTRA = 4;
+
+	private static final byte SUBFIELD_ID1 = 'F';
+
+	private static final byte SUBFIELD_ID2 = 'A';
+
+	/** 固定头 10 字节 + XLEN 2 字节 + 子字段 8 字节 | 10 fixed bytes + 2 XLEN bytes + 8 subfield bytes */
+	private static final int HEADER_SIZE = 20;
+
+	private static final int TRAILER_SIZE = 8;
+
+	private final int threads;
+
+	private final int blockSize;
+
+	private final int level;
+
+	/** 一块压缩后可能的最大成员字节数 | Largest member a block can compress into */
+	private final int maxMemberSize;
+
+	/**
+	 * Construct {@link ParallelGzip} with one thread per core, 256KB blocks and the default compression level
+	 */
+	public ParallelGzip() {
+		this(Runtime.getRuntime().availableProcessors(), 256 * 1024, Deflater.DEFAULT_COMPRESSION);
+	}
+
+	/**
+	 * Construct {@link ParallelGzip}
+	 * @param threads
+	 *            压缩/解压线程数
+	 *            number of compression / decompression threads
+	 * @param blockSize
+	 *            每块未压缩字节数
+	 *            uncompressed bytes per block
+	 * @param level
+	 *            压缩级别 0-9, 或 {@link Deflater#DEFAULT_COMPRESSION}
+	 *            compression level 0-9, or {@link Deflater#DEFAULT_COMPRESSION}
+	 */
+	public ParallelGzip(final int threads, final int blockSize, final int level) {
+		if (threads < 1 || blockSize < 1) {
+			throw new IllegalArgumentException("threads and blockSize must be positive");
+		}
+		this.threads = threads;
+		this.blockSize = blockSize;
+		this.level = level;
+		// 与 zlib deflateBound 相同的上界 | Same bound as zlib's deflateBound
+		this.maxMemberSize = (int) Math.min(Integer.MAX_VALUE - 8,
+				(long) blockSize + (blockSize >> 12) + (blockSize >> 14) + (blockSize >> 25) + 13 + HEADER_SIZE + TRAILER_SIZE);
+	}
+
+	/**
+	 * 压缩复制文件,若目标文件含有多级路径,则先创建路径
+	 * Compress the file into the destination file, creating the destination path first if needed
+	 *
+	 * @param from
+	 *            待压缩的文件
+	 *            file to be compressed
+	 * @param to
+	 *            目标 gzip 文件
+	 *            destination gzip file
+	 * @return 未压缩字节数, 源文件不存在时返回 -1
+	 *         number of uncompressed bytes, -1 if the source file does not exist
+	 * @throws IOException
+	 */
+	public long compress(final File from, final File to) throws IOException {
+		if (!from.isFile()) {
+			return -1;
+		}
+		FileUtil.createFile(to);
+		try (InputStream in = new FileInputStream(from); OutputStream out = new FileOutputStream(to)) {
+			return compress(in, out);
+		}
+	}
+
+	/**
+	 * 解压 gzip 文件到目标文件
+	 * Decompress the gzip file into the destination file
+	 *
+	 * @param from
+	 *            gzip 文件
+	 *            gzip file
+	 * @param to
+	 *            目标文件
+	 *            destination file
+	 * @return 解压后的字节数, 源文件不存在时返回 -1
+	 *         number of decompressed bytes, -1 if the source file does not exist
+	 * @throws IOException
+	 */
+	public long decompress(final File from, final File to) throws IOException {
+		if (!from.isFile()) {
+			return -1;
+		}
+		FileUtil.createFile(to);
+		try (InputStream in = new FileInputStream(from); OutputStream out = new FileOutputStream(to)) {
+			return decompress(in, out);
+		}
+	}
+
+	/**
+	 * 将目录打包({@link FilePacker})后压缩为单个归档文件, 中间的打包文件仅所有者可读写, 放在归档文件旁边
+	 * Pack the directory with {@link FilePacker} and compress it into a single archive file, the intermediate pack file
+	 * is readable by its owner only and staged next to the archive, on the same device
+	 *
+	 * @param sourceDir
+	 *            待归档的目录
+	 *            directory to archive
+	 * @param archive
+	 *            目标归档文件
+	 *            destination archive file
+	 * @return 打包文件的未压缩字节数
+	 *         uncompressed size of the pack file
+	 * @throws IOException
+	 */
+	public long archive(final File sourceDir, final File archive) throws IOException {
+		final File packFile = stagingFile(archive);
+		try {
+			new FilePacker(this.threads).pack(sourceDir, packFile);
+			return compress(packFile, archive);
+		}
+		finally {
+			packFile.delete();
+		}
+	}
+
+	/**
+	 * 解压并解包 {@link #archive(File, File)} 生成的归档文件, 中间的打包文件放在目标目录旁边
+	 * Decompress and unpack an archive created by {@link #archive(File, File)}, the intermediate pack file is staged next
+	 * to the target directory
+	 *
+	 * @param archive
+	 *            归档文件
+	 *            archive file
+	 * @param targetDir
+	 *            目标目录
+	 *            target directory
+	 * @return 成员数量
+	 *         number of members
+	 * @throws IOException
+	 */
+	public int extract(final File archive, final File targetDir) throws IOException {
+		final File packFile = stagingFile(targetDir);
+		try {
+			decompress(archive, packFile);
+			return new FilePacker(this.threads).unpack(packFile, targetDir);
+		}
+		finally {
+			packFile.delete();
+		}
+	}
+
+	/**
+	 * 在 target 所在目录创建临时打包文件, 与 target 同一设备且权限为 0600 (POSIX)
+	 * Create the temporary pack file in the directory of target, on the same device and with 0600 permissions on POSIX
+	 */
+	private static File stagingFile(final File target) throws IOException {
+		final File parent = target.getAbsoluteFile().getParentFile();
+		FileUtil.createDirectoryRecursively(parent.getPath());
+		return Files.createTempFile(parent.toPath(), "." + target.getName() + ".", ".fpak").toFile();
+	}
+
+	/**
+	 * 分块并行压缩输入流,两个流都不会被关闭
+	 * Compress the input stream in parallel blocks, neither stream is closed
+	 *
+	 * @param in
+	 *            输入流
+	 *            input stream
+	 * @param out
+	 *            gzip 输出流
+	 *            gzip output stream
+	 * @return 未压缩字节数
+	 *         number of uncompressed bytes
+	 * @throws IOException
+	 */
+	public long compress(final InputStream in, final OutputStream out) throws IOException {
+		final ExecutorService executor = Executors.newFixedThreadPool(this.threads);
+		final ConcurrentLinkedQueue<Deflater> deflaters = new ConcurrentLinkedQueue<>();
+		final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+		long total = 0;
+		try {
+			for (;;) {
+				final byte[] block = new byte[this.blockSize];
+				final int length = readFully(in, block, 0, block.length);
+				if (length == 0 && total > 0) {
+					break;
+				}
+				total += length;
+				pending.add(executor.submit(() -> deflate(deflaters, block, length)));
+				// 限制内存中的块数量 | Bound the number of blocks held in memory
+				while (pending.size() >= this.threads * 2) {
+					out.write(get(pending.poll()));
+				}
+				if (length < block.length) {
+					break;
+				}
+			}
+			while (!pending.isEmpty()) {
+				out.write(get(pending.poll()));
+			}
+			out.flush();
+		}
+		finally {
+			if (terminate(executor)) {
+				for (final Deflater deflater : deflaters) {
+					deflater.end();
+				}
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * 解压 gzip 输入流,带有块大小字段的成员并行解压,两个流都不会被关闭
+	 * Decompress the gzip input stream, members carrying the block size field are inflated in parallel; neither stream is
+	 * closed
+	 *
+	 * @param in
+	 *            gzip 输入流
+	 *            gzip input stream
+	 * @param out
+	 *            输出流
+	 *            output stream
+	 * @return 解压后的字节数
+	 *         number of decompressed bytes
+	 * @throws IOException
+	 */
+	public long decompress(final InputStream in, final OutputStream out) throws IOException {
+		final InputStream source = new BufferedInputStream(in);
+		final ExecutorService executor = Executors.newFixedThreadPool(this.threads);
+		final ConcurrentLinkedQueue<Inflater> inflaters = new ConcurrentLinkedQueue<>();
+		final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+		long total = 0;
+		try {
+			for (;;) {
+				final byte[] header = new byte[HEADER_SIZE];
+				final int headerLength = readFully(source, header, 0, header.length);
+				if (headerLength == 0) {
+					break;
+				}
+				final int memberSize = headerLength == HEADER_SIZE ? memberSize(header) : -1;
+				if (memberSize < 0 || memberSize > this.maxMemberSize) {
+					// 普通 gzip 成员,剩余部分串行解压 | Plain gzip member, inflate the rest serially
+					while (!pending.isEmpty()) {
+						total += write(out, get(pending.poll()));
+					}
+					return total + serial(new SequenceInputStream(new ByteArrayInputStream(header, 0, headerLength), source), out);
+				}
+				final byte[] member = new byte[memberSize];
+				System.arraycopy(header, 0, member, 0, HEADER_SIZE);
+				if (readFully(source, member, HEADER_SIZE, memberSize - HEADER_SIZE) != memberSize - HEADER_SIZE) {
+					throw new EOFException("Truncated gzip member");
+				}
+				final int size = readIntLE(member, memberSize - 4);
+				if (size < 0 || size > this.blockSize) {
+					// 不是本实例的块大小写出的成员,串行解压该成员 | Not written with this block size, inflate this member serially
+					while (!pending.isEmpty()) {
+						total += write(out, get(pending.poll()));
+					}
+					total += serial(new ByteArrayInputStream(member), out);
+					continue;
+				}
+				pending.add(executor.submit(new InflateTask(inflaters, member, size)));
+				while (pending.size() >= this.threads * 2) {
+					total += write(out, get(pending.poll()));
+				}
+			}
+			while (!pending.isEmpty()) {
+				total += write(out, get(pending.poll()));
+			}
+			out.flush();
+		}
+		finally {
+			if (terminate(executor)) {
+				for (final Inflater inflater : inflaters) {
+					inflater.end();
+				}
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * 压缩一块为完整的 gzip 成员, Deflater 在同一次压缩的各线程间复用
+	 * Compress one block into a complete gzip member, deflaters are reused across the threads of one compression
+	 */
+	private byte[] deflate(final ConcurrentLinkedQueue<Deflater> deflaters, final byte[] block, final int length) throws IOException {
+		Deflater deflater = deflaters.poll();
+		if (deflater == null) {
+			deflater = new Deflater(this.level, true);
+		}
+		deflater.reset();
+		deflater.setInput(block, 0, length);
+		deflater.finish();
+		final ByteArrayOutputStream member = new ByteArrayOutputStream(length / 2 + HEADER_SIZE + TRAILER_SIZE + 64);
+		member.write(new byte[HEADER_SIZE], 0, HEADER_SIZE);
+		final byte[] chunk = new byte[64 * 1024];
+		while (!deflater.finished()) {
+			final int n = deflater.deflate(chunk);
+			member.write(chunk, 0, n);
+		}
+		final CRC32 crc = new CRC32();
+		crc.update(block, 0, length);
+		writeIntLE(member, (int) crc.getValue());
+		writeIntLE(member, length);
+		deflaters.offer(deflater);
+
+		final byte[] bytes = member.toByteArray();
+		writeHeader(bytes, bytes.length);
+		return bytes;
+	}
+
+	private static void writeHeader(final byte[] bytes, final int memberSize) {
+		bytes[0] = (byte) GZIP_MAGIC;
+		bytes[1] = (byte) (GZIP_MAGIC >> 8);
+		bytes[2] = Deflater.DEFLATED;
+		bytes[3] = FEXTRA;
+		// MTIME(4) = 0, XFL = 0
+		bytes[9] = (byte) 255; // OS unknown
+		bytes[10] = 8; // XLEN
+		bytes[11] = 0;
+		bytes[12] = SUBFIELD_ID1;
+		bytes[13] = SUBFIELD_ID2;
+		bytes[14] = 4; // SLEN
+		bytes[15] = 0;
+		for (int i = 0; i < 4; i++) {
+			bytes[16 + i] = (byte) (memberSize >>> (8 * i));
+		}
+	}
+
+	/**
+	 * @return 头部记录的成员字节数, 不是本类写出的成员时返回 -1
+	 *         member size recorded in the header, -1 if the member was not written by this class
+	 */
+	private static int memberSize(final byte[] header) throws IOException {
+		if ((header[0] & 0xff | (header[1] & 0xff) << 8) != GZIP_MAGIC) {
+			throw new IOException("Not in GZIP format");
+		}
+		if (header[3] != FEXTRA || header[10] != 8 || header[11] != 0 || header[12] != SUBFIELD_ID1 || header[13] != SUBFIELD_ID2
+				|| header[14] != 4 || header[15] != 0) {
+			return -1;
+		}
+		final int size = header[16] & 0xff | (header[17] & 0xff) << 8 | (header[18] & 0xff) << 16 | (header[19] & 0xff) << 24;
+		return size < HEADER_SIZE + TRAILER_SIZE ? -1 : size;
+	}
+
+	private static final class InflateTask implements Callable<byte[]> {
+
+		private final ConcurrentLinkedQueue<Inflater> inflaters;
+
+		private final byte[] member;
+
+		private final int size;
+
+		/**
+		 * @param size
+		 *            已校验过范围的解压后字节数
+		 *            decompressed size, already checked against the block size
+		 */
+		InflateTask(final ConcurrentLinkedQueue<Inflater> inflaters, final byte[] member, final int size) {
+			this.inflaters = inflaters;
+			this.member = member;
+			this.size = size;
+		}
+
+		@Override
+		public byte[] call() throws IOException {
+			final int trailer = this.member.length - TRAILER_SIZE;
+			final int expectedCrc = readIntLE(this.member, trailer);
+			final int size = this.size;
+			final byte[] data = new byte[size];
+			Inflater inflater = this.inflaters.poll();
+			if (inflater == null) {
+				inflater = new Inflater(true);
+			}
+			inflater.reset();
+			inflater.setInput(this.member, HEADER_SIZE, trailer - HEADER_SIZE);
+			try {
+				int inflated = 0;
+				while (inflated < size && !inflater.finished()) {
+					final int n = inflater.inflate(data, inflated, size - inflated);
+					if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+						break;
+					}
+					inflated += n;
+				}
+				if (inflated != size || !inflater.finished()) {
+					throw new IOException("Corrupt gzip member");
+				}
+			}
+			catch (final DataFormatException e) {
+				throw new IOException("Corrupt gzip member", e);
+			}
+			finally {
+				this.inflaters.offer(inflater);
+			}
+			final CRC32 crc = new CRC32();
+			crc.update(data, 0, size);
+			if ((int) crc.getValue() != expectedCrc) {
+				throw new IOException("Corrupt gzip member (crc mismatch)");
+			}
+			return data;
+		}
+	}
+
+	/**
+	 * 停止线程池并等待正在压缩/解压的任务结束, 之后才能释放 Deflater/Inflater 的本地内存
+	 * Stop the pool and wait for running tasks, only then may the native memory of the deflaters / inflaters be released
+	 *
+	 * @return 所有任务已结束; 否则留给 GC 回收
+	 *         true if every task has finished; otherwise they are left to the garbage collector
+	 */
+	private static boolean terminate(final ExecutorService executor) {
+		executor.shutdownNow();
+		try {
+			return executor.awaitTermination(1, TimeUnit.MINUTES);
+		}
+		catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	private static long serial(final InputStream in, final OutputStream out) throws IOException {
+		final GZIPInputStream gzip = new GZIPInputStream(in, 64 * 1024);
+		final byte[] buf = new byte[64 * 1024];
+		long total = 0;
+		for (;;) {
+			final int n = gzip.read(buf);
+			if (n == -1) {
+				break;
+			}
+			out.write(buf, 0, n);
+			total += n;
+		}
+		out.flush();
+		return total;
+	}
+
+	private static int write(final OutputStream out, final byte[] data) throws IOException {
+		out.write(data);
+		return data.length;
+	}
+
+	private static <T> T get(final Future<T> future) throws IOException {
+		try {
+			return future.get();
+		}
+		catch (final ExecutionException e) {
+			throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+		}
+		catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for block", e);
+		}
+	}
+
+	private static int readFully(final InputStream in, final byte[] buf, final int off, final int len) throws IOException {
+		int read = 0;
+		while (read < len) {
+			final int n = in.read(buf, off + read, len - read);
+			if (n == -1) {
+				break;
+			}
+			read += n;
+		}
+		return read;
+	}
+
+	private static void writeIntLE(final OutputStream out, final int value) throws IOException {
+		out.write(value);
+		out.write(value >>> 8);
+		out.write(value >>> 16);
+		out.write(value >>> 24);
+	}
+
+	private static int readIntLE(final byte[] buf, final int off) {
+		return buf[off] & 0xff | (buf[off + 1] & 0xff) << 8 | (buf[off + 2] & 0xff) << 16 | (buf[off + 3] & 0xff) << 24;
+	}
+}
@@ -0,0 +1,182 @@
+package com.file_io;
+
+/**
+ * 不分配内存的路径名工具,作用于 CharSequence 和 UTF-8 字节片段,返回偏移量而不是新的字符串
+ * Allocation-free path name utilities over CharSequence and UTF-8 byte slices, returning offsets instead of new Strings
+ * <p>
+ * 语义与 {@link FileUtil#indexOfLastSeparator(String)}、{@link FileUtil#indexOfExtension(String)} 相同,
+ * 但只从末尾向前扫描一次. 分隔符和点号都是 ASCII 字符,因此 UTF-8 字节可以直接扫描.
+ * Same semantics as {@link FileUtil#indexOfLastSeparator(String)} and {@link FileUtil#indexOfExtension(String)}, but
+ * with a single backward scan. Separators and the dot are ASCII, so UTF-8 bytes can be scanned directly.
+ * </p>
+ * <pre>
+ * example:
+ *   path = "a/b/c.jpg"
+ *   indexOfLastSeparator(path, 0, 9)  --> 3   filename is [4, 9)
+ *   indexOfExtension(path, 0, 9)      --> 5   extension is [6, 9), stripped name is [0, 5)
+ * </pre>
+ * @author Juanjuan
+ */
+public final class PathNames {
+
+	private static final char UNIX_SEPARATOR = '/';
+
+	private static final char WINDOWS_SEPARATOR = '\\';
+
+	private static final char EXTENSION_SEPARATOR = '.';
+
+	private PathNames() {
+	}
+
+	/**
+	 * 返回 [start, end) 范围内最后一个目录分隔符的位置
+	 * Returns the index of the last directory separator within [start, end)
+	 *
+	 * @param path
+	 *            路径
+	 *            the path
+	 * @param start
+	 *            起始位置(包含)
+	 *            start index, inclusive
+	 * @param end
+	 *            结束位置(不包含)
+	 *            end index, exclusive
+	 * @return 分隔符位置, 不存在时返回 -1
+	 *         index of the separator, -1 if there is none
+	 */
+	public static int indexOfLastSeparator(final CharSequence path, final int start, final int end) {
+		for (int i = end - 1; i >= start; i--) {
+			final char c = path.charAt(i);
+			if (c == UNIX_SEPARATOR || c == WINDOWS_SEPARATOR) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * 返回 [start, end) 范围内扩展名前点号的位置,点号之后不能再有目录分隔符
+	 * Returns the index of the extension dot within [start, end), there must be no directory separator after it
+	 *
+	 * @param path
+	 *            路径
+	 *            the path
+	 * @param start
+	 *            起始位置(包含)
+	 *            start index, inclusive
+	 * @param end
+	 *            结束位置(不包含)
+	 *            end index, exclusive
+	 * @return 点号位置, 不存在时返回 -1
+	 *         index of the dot, -1 if there is none
+	 */
+	public static int indexOfExtension(final CharSequence path, final int start, final int end) {
+		for (int i = end - 1; i >= start; i--) {
+			final char c = path.charAt(i);
+			if (c == EXTENSION_SEPARATOR) {
+				return i;
+			}
+			if (c == UNIX_SEPARATOR || c == WINDOWS_SEPARATOR) {
+				return -1;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * 返回 UTF-8 字节片段 [off, off + len) 内最后一个目录分隔符的位置
+	 * Returns the index of the last directory separator within the UTF-8 slice [off, off + len)
+	 *
+	 * @param utf8
+	 *            UTF-8 编码的路径
+	 *            UTF-8 encoded path
+	 * @param off
+	 *            起始位置
+	 *            start offset
+	 * @param len
+	 *            字节数
+	 *            number of bytes
+	 * @return 分隔符在数组中的位置, 不存在时返回 -1
+	 *         array index of the separator, -1 if there is none
+	 */
+	public static int indexOfLastSeparator(final byte[] utf8, final int off, final int len) {
+		for (int i = off + len - 1; i >= off; i--) {
+			final byte b = utf8[i];
+			if (b == UNIX_SEPARATOR || b == WINDOWS_SEPARATOR) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * 返回 UTF-8 字节片段 [off, off + len) 内扩展名前点号的位置
+	 * Returns the index of the extension dot within the UTF-8 slice [off, off + len)
+	 *
+	 * @param utf8
+	 *            UTF-8 编码的路径
+	 *            UTF-8 encoded path
+	 * @param off
+	 *            起始位置
+	 *            start offset
+	 * @param len
+	 *            字节数
+	 *            number of bytes
+	 * @return 点号在数组中的位置, 不存在时返回 -1
+	 *         array index of the dot, -1 if there is none
+	 */
+	public static int indexOfExtension(final byte[] utf8, final int off, final int len) {
+		for (int i = off + len - 1; i >= off; i--) {
+			final byte b = utf8[i];
+			if (b == EXTENSION_SEPARATOR) {
+				return i;
+			}
+			if (b == UNIX_SEPARATOR || b == WINDOWS_SEPARATOR) {
+				return -1;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * 返回文件名(最后一个分隔符之后)的起始位置
+	 * Returns the start index of the file name, i.e. the part after the last separator
+	 *
+	 * @param path
+	 *            路径
+	 *            the path
+	 * @param start
+	 *            起始位置(包含)
+	 *            start index, inclusive
+	 * @param end
+	 *            结束位置(不包含)
+	 *            end index, exclusive
+	 * @return 文件名起始位置, 文件名为 [返回值, end)
+	 *         start of the file name, the file name is [result, end)
+	 */
+	public static int filenameStart(final CharSequence path, final int start, final int end) {
+		final int separator = indexOfLastSeparator(path, start, end);
+		return separator == -1 ? start : separator + 1;
+	}
+
+	/**
+	 * 返回去掉扩展名后的结束位置
+	 * Returns the end index of the path with its extension stripped
+	 *
+	 * @param path
+	 *            路径
+	 *            the path
+	 * @param start
+	 *            起始位置(包含)
+	 *            start index, inclusive
+	 * @param end
+	 *            结束位置(不包含)
+	 *            end index, exclusive
+	 * @return 去掉扩展名后的结束位置, 去扩展名后的路径为 [start, 返回值)
+	 *         end of the stripped path, the stripped path is [start, result)
+	 */
+	public static int strippedEnd(final CharSequence path, final int start, final int end) {
+		final int dot = indexOfExtension(path, start, end);
+		return dot == -1 ? end : dot;
+	}
+}
@@ -16,13 +16,67 @@ import static spark.debug.DebugScreen.*;
  */
 public class UploadExample {
 
+    /**
+     * 以当前目录下的 upload 目录启动上传服务. 从仓库根目录运行时, 仓库中的示例文件 upload/2851303328019340139 在首次启动时
+     * 被 {@link UploadStore} 迁移到 upload/28/51/ 下, 旧地址 /2851303328019340139 重定向到 /files/2851303328019340139
+     * Start the upload service on the upload directory of the working directory. Run from the repository root, the
+     * sample file upload/2851303328019340139 tracked in the repository is moved under upload/28/51/ by
+     * {@link UploadStore} on the first start, and its old URL /2851303328019340139 redirects to
+     * /files/2851303328019340139
+     *
+     * @param args
+     *            可选的大小上限(如 1GB)和淘汰策略
+     *            optional size cap (e.g. 1GB) and eviction policy
+     */
     public static void main(String[] args) {
         enableDebugScreen();
+        long maxBytes = FileUtil.toFileSize(args.length > 0 ? args[0] : "1GB");
+        UploadStore.EvictionPolicy policy = UploadStore.EvictionPolicy.valueOf(args.length > 1 ? args[1] : "LRU");
+        start(4567, new File("upload"), maxBytes, policy);
+    }
+
+    /**
+     * 在指定端口启动上传服务,上传的文件保存在指定目录,不设大小上限
+     * Start the upload routes on the given port, uploaded files are saved in the given directory without a size cap
+     *
+     * @param port
+     *            HTTP 端口
+     *            HTTP port
+     * @param uploadDir
+     *            上传目录
+     *            upload directory
+     */
+    public static void start(int port, File uploadDir) {
+        start(port, uploadDir, Long.MAX_VALUE, UploadStore.EvictionPolicy.LRU);
+    }
 
-        File uploadDir = new File("upload");
-        uploadDir.mkdir(); // create the upload directory if it doesn't exist
+    /**
+     * 在指定端口启动上传服务,上传的文件保存在 {@link UploadStore} 中,通过 /files/:key 访问,旧版本的 /:name 地址重定向到该路径
+     * Start the upload routes on the given port, uploaded files are saved in an {@link UploadStore} and served from
+     * /files/:key, the /:name URLs of earlier versions redirect there
+     *
+     * @param port
+     *            HTTP 端口
+     *            HTTP port
+     * @param uploadDir
+     *            上传目录
+     *            upload directory
+     * @param maxBytes
+     *            上传目录的大小上限
+     *            cap on the size of the upload directory
+     * @param policy
+     *            超过上限时的淘汰策略
+     *            eviction policy once over the cap
+     */
+    public static void start(int port, File uploadDir, long maxBytes, UploadStore.EvictionPolicy policy) {
+        UploadStore store;
+        try {
+            store = new UploadStore(uploadDir, maxBytes, policy);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
 
-        staticFiles.externalLocation("upload");
+        port(port);
 
         get("/", (req, res) -> {
               /*    "<form method='post' enctype='multipart/form-data'>" // note the enctype
@@ -37,17 +91,56 @@ public class UploadExample {
 
         post("/", (req, res) -> {
 
-            Path tempFile = Files.createTempFile(uploadDir.toPath(), "", "");
-
             req.attribute("org.eclipse.jetty.multipartConfig", new MultipartConfigElement("/temp"));
 
-            try (InputStream input = req.raw().getPart("uploaded_file").getInputStream()) { // getPart needs to use same "name" as input field in form
-                Files.copy(input, tempFile, StandardCopyOption.REPLACE_EXISTING);
+            Part part = req.raw().getPart("uploaded_file"); // getPart needs to use same "name" as input field in form
+            if (part.getSize() > store.getMaxBytes()) {
+                halt(413, "Upload exceeds " + store.getMaxBytes() + " bytes");
+            }
+            String key;
+            try (InputStream input = part.getInputStream()) {
+                key = store.store(input, part.getSize(), getFileName(part));
             }
 
-            logInfo(req, tempFile);
-            return "<h1>You uploaded this image:<h1><img src='" + tempFile.getFileName() + "'>";
+            logInfo(req, store.path(key));
+            return "<h1>You uploaded this image:<h1><img src='files/" + key + "'>";
+
+        });
 
+        get("/files/:key", (req, res) -> {
+            File file;
+            try {
+                file = store.open(req.params(":key"));
+            } catch (IllegalArgumentException e) {
+                file = null; // not a key the store hands out
+            }
+            if (file == null) {
+                halt(404, "Not found");
+            }
+            String contentType = Files.probeContentType(file.toPath());
+            res.type(contentType != null ? contentType : "application/octet-stream");
+            try {
+                Files.copy(file.toPath(), res.raw().getOutputStream());
+            } catch (NoSuchFileException e) {
+                halt(404, "Not found"); // evicted in the meantime
+            }
+            return ""; // body already written
+        });
+
+        // files used to be served flat from the upload directory, keep their old URLs working
+        get("/:name", (req, res) -> {
+            String name = req.params(":name");
+            File file;
+            try {
+                file = store.open(name);
+            } catch (IllegalArgumentException e) {
+                file = null; // not a key the store hands out
+            }
+            if (file == null) {
+                halt(404, "Not found");
+            }
+            res.redirect("/files/" + name, 301);
+            return "";
         });
 
     }
@@ -0,0 +1,330 @@
+package com.file_io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * 上传文件存储,按键的前四个十六进制字符分散到两级子目录,总大小超过上限时按访问记录淘汰
+ * Store for uploaded files, fanned out into two levels of subdirectories by the first four hex characters of the key,
+ * evicting by access history once the total size exceeds the cap
+ * <p>
+ * 键为随机 UUID 加原扩展名,如 {@code 3f2a...9c.png} 存放在 {@code 3f/2a/} 下,每级最多 256 个子目录,单个目录不会无限增长.
+ * 超过上限时一次淘汰到上限的 90%,整理成本分摊到多次写入,刚写入的文件不会在同一次写入中被淘汰;大于上限的上传直接拒绝.
+ * 启动时扫描已有文件,以修改时间作为最近访问时间. 旧版本直接保存在根目录下的数字文件名(如 {@code 2851303328019340139})
+ * 以原名作为键迁移到分级目录中.
+ * Keys are a random UUID plus the original extension, e.g. {@code 3f2a...9c.png} stored under {@code 3f/2a/}; every
+ * level has at most 256 subdirectories so no single directory grows without bound. Exceeding the cap evicts down to
+ * 90% of it in one pass, so the sorting cost is spread over many writes; the file just written is never evicted by its
+ * own write, and uploads larger than the cap are rejected. Files already present are indexed on startup with their
+ * modification time as last access. Numeric files saved flat under the root by earlier versions, e.g.
+ * {@code 2851303328019340139}, are moved into the shard layout keeping their name as key.
+ * </p>
+ * @author Juanjuan
+ */
+public class UploadStore {
+
+	/**
+	 * 淘汰策略
+	 * Eviction policy
+	 */
+	public enum EvictionPolicy {
+		/** 最久未访问的先淘汰 | Least recently used first */
+		LRU,
+		/** 访问次数最少的先淘汰,次数相同时最久未访问的先淘汰 | Least frequently used first, least recently used among equals */
+		LFU
+	}
+
+	private static final Pattern EXTENSION = Pattern.compile("[A-Za-z0-9]{1,16}");
+
+	/** 新键, 或旧版本 Files.createTempFile 生成的数字文件名 | New keys, or numeric names from Files.createTempFile in earlier versions */
+	private static final Pattern KEY = Pattern.compile("[0-9a-f]{32}(\\." + EXTENSION.pattern() + ")?|[0-9]{4,20}");
+
+	private static final String PART_SUFFIX = ".part";
+
+	private final Path root;
+
+	private final long maxBytes;
+
+	private final EvictionPolicy policy;
+
+	private final DirectoryCache directories = new DirectoryCache();
+
+	private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+	private final AtomicLong totalBytes = new AtomicLong();
+
+	/** 逻辑时钟,比墙上时间便宜且严格递增 | Logical clock, cheaper than wall time and strictly increasing */
+	private final AtomicLong clock = new AtomicLong();
+
+	private final Object evictionLock = new Object();
+
+	/**
+	 * Construct {@link UploadStore}, indexing files already under the root
+	 * @param root
+	 *            存储根目录,不存在时创建
+	 *            root directory, created if it does not exist
+	 * @param maxBytes
+	 *            总大小上限
+	 *            cap on the total size
+	 * @param policy
+	 *            淘汰策略
+	 *            eviction policy
+	 * @throws IOException
+	 */
+	public UploadStore(final File root, final long maxBytes, final EvictionPolicy policy) throws IOException {
+		if (maxBytes < 1) {
+			throw new IllegalArgumentException("maxBytes must be positive");
+		}
+		this.root = root.getAbsoluteFile().toPath().normalize();
+		this.maxBytes = maxBytes;
+		this.policy = policy;
+		this.directories.ensureDirectory(this.root.toFile());
+		index();
+	}
+
+	private void index() throws IOException {
+		migrateFlatFiles();
+		final List<Entry> found = new ArrayList<>();
+		try (DirectoryStream<Path> level1 = Files.newDirectoryStream(this.root)) {
+			for (final Path first : level1) {
+				if (!Files.isDirectory(first)) {
+					continue;
+				}
+				try (DirectoryStream<Path> level2 = Files.newDirectoryStream(first)) {
+					for (final Path second : level2) {
+						if (!Files.isDirectory(second)) {
+							continue;
+						}
+						try (DirectoryStream<Path> files = Files.newDirectoryStream(second)) {
+							for (final Path file : files) {
+								final String key = file.getFileName().toString();
+								if (key.endsWith(PART_SUFFIX)) {
+									// 上次中断的写入 | Write interrupted by the previous run
+									Files.deleteIfExists(file);
+								}
+								else if (KEY.matcher(key).matches() && file.equals(path(key))) {
+									found.add(new Entry(key, Files.size(file), Files.getLastModifiedTime(file).toMillis()));
+								}
+							}
+						}
+					}
+				}
+			}
+		}
+		// 按修改时间编排逻辑时钟 | Order the logical clock by modification time
+		found.sort(Comparator.comparingLong(e -> e.lastAccess));
+		for (final Entry entry : found) {
+			entry.lastAccess = this.clock.incrementAndGet();
+			this.entries.put(entry.key, entry);
+			this.totalBytes.addAndGet(entry.size);
+		}
+		evictIfNeeded(null);
+	}
+
+	/**
+	 * 将旧版本保存在根目录下的文件移入分级目录,修改时间不变
+	 * Move files saved flat under the root by earlier versions into the shard layout, keeping their modification time
+	 */
+	private void migrateFlatFiles() throws IOException {
+		final List<Path> flat = new ArrayList<>();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(this.root)) {
+			for (final Path file : files) {
+				if (Files.isRegularFile(file) && KEY.matcher(file.getFileName().toString()).matches()) {
+					flat.add(file);
+				}
+			}
+		}
+		for (final Path file : flat) {
+			final Path target = path(file.getFileName().toString());
+			this.directories.ensureDirectory(target.getParent().toFile());
+			if (!Files.exists(target)) {
+				Files.move(file, target, StandardCopyOption.ATOMIC_MOVE);
+			}
+		}
+	}
+
+	/**
+	 * 保存输入流为新文件,必要时淘汰其他文件
+	 * Save the input stream as a new file, evicting other files if needed
+	 *
+	 * @param inputStream
+	 *            文件输入流,返回前关闭
+	 *            file input stream, closed before returning
+	 * @param sizeHint
+	 *            预计字节数,未知时传 -1
+	 *            expected number of bytes, -1 when unknown
+	 * @param filename
+	 *            原文件名,只保留其扩展名,可为 null
+	 *            original file name, only its extension is kept, may be null
+	 * @return 文件的键
+	 *         key of the file
+	 * @throws IllegalArgumentException
+	 *             文件大于总大小上限, 未写入任何内容
+	 *             the file is larger than the cap on the total size, nothing is kept
+	 * @throws IOException
+	 */
+	public String store(final InputStream inputStream, final long sizeHint, final String filename) throws IOException {
+		if (sizeHint > this.maxBytes) {
+			inputStream.close();
+			throw tooLarge(sizeHint);
+		}
+		final String extension = FileUtil.getFilenameExtension(filename);
+		final String key = UUID.randomUUID().toString().replace("-", "")
+				+ (extension != null && EXTENSION.matcher(extension).matches() ? "." + extension : "");
+		final Path target = path(key);
+		this.directories.ensureDirectory(target.getParent().toFile());
+		// 写完后再改名,读者不会看到不完整的文件 | Renamed once complete so readers never see a partial file
+		final Path part = target.resolveSibling(key + PART_SUFFIX);
+		final long size;
+		try {
+			size = FileUtil.copyStreamToFile(inputStream, part.toFile(), sizeHint);
+			if (size > this.maxBytes) {
+				// 大小未知时只能写完才发现 | Only found out after writing when the size was unknown
+				throw tooLarge(size);
+			}
+			Files.move(part, target, StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch (final IOException | RuntimeException e) {
+			Files.deleteIfExists(part);
+			throw e;
+		}
+		final Entry entry = new Entry(key, size, this.clock.incrementAndGet());
+		// 写入计为一次访问,新文件不会在 LFU 下立即被淘汰 | The write counts as an access so LFU does not evict it at once
+		entry.hits = 1;
+		this.entries.put(key, entry);
+		this.totalBytes.addAndGet(size);
+		evictIfNeeded(entry);
+		return key;
+	}
+
+	private IllegalArgumentException tooLarge(final long size) {
+		return new IllegalArgumentException("Upload of " + size + " bytes exceeds the cap of " + this.maxBytes + " bytes");
+	}
+
+	/**
+	 * 取得文件并记录一次访问
+	 * Get the file and record an access
+	 *
+	 * @param key
+	 *            {@link #store(InputStream, long, String)} 返回的键
+	 *            key returned by {@link #store(InputStream, long, String)}
+	 * @return 文件,键无效或已淘汰时返回 null
+	 *         the file, null for an invalid or evicted key
+	 */
+	public File open(final String key) {
+		final Entry entry = key == null ? null : this.entries.get(key);
+		if (entry == null) {
+			return null;
+		}
+		entry.lastAccess = this.clock.incrementAndGet();
+		entry.hits++;
+		return path(key).toFile();
+	}
+
+	/**
+	 * @return 当前总字节数
+	 *         current total size in bytes
+	 */
+	public long getTotalBytes() {
+		return this.totalBytes.get();
+	}
+
+	/**
+	 * @return 总大小上限, 也是单个文件的大小上限
+	 *         cap on the total size, and thus on the size of a single file
+	 */
+	public long getMaxBytes() {
+		return this.maxBytes;
+	}
+
+	/**
+	 * @return 当前文件数
+	 *         current number of files
+	 */
+	public int size() {
+		return this.entries.size();
+	}
+
+	Path path(final String key) {
+		if (!KEY.matcher(key).matches()) {
+			throw new IllegalArgumentException("Illegal key " + key);
+		}
+		return this.root.resolve(key.substring(0, 2)).resolve(key.substring(2, 4)).resolve(key);
+	}
+
+	/**
+	 * @param keep
+	 *            本次写入的文件,不参与淘汰,可为 null
+	 *            file written by the current store call, never a victim of this pass, may be null
+	 */
+	private void evictIfNeeded(final Entry keep) throws IOException {
+		if (this.totalBytes.get() <= this.maxBytes) {
+			return;
+		}
+		synchronized (this.evictionLock) {
+			if (this.totalBytes.get() <= this.maxBytes) {
+				return;
+			}
+			final List<Entry> candidates = new ArrayList<>(this.entries.values());
+			// 访问字段并发变化,先固定排序键 | Access fields change concurrently, pin the sort keys first
+			for (final Entry entry : candidates) {
+				entry.pin(this.policy);
+			}
+			candidates.sort(Comparator.<Entry>comparingLong(e -> e.pinnedHits).thenComparingLong(e -> e.pinnedAccess));
+			final long lowWatermark = this.maxBytes - this.maxBytes / 10;
+			for (final Entry victim : candidates) {
+				if (this.totalBytes.get() <= lowWatermark) {
+					break;
+				}
+				if (victim != keep && this.entries.remove(victim.key, victim)) {
+					Files.deleteIfExists(path(victim.key));
+					this.totalBytes.addAndGet(-victim.size);
+				}
+			}
+		}
+	}
+
+	/**
+	 * 单个文件的访问记录
+	 * Access history of a single file
+	 */
+	private static final class Entry {
+
+		final String key;
+
+		final long size;
+
+		volatile long lastAccess;
+
+		/** 允许并发访问时少计,只用于排序 | Racy increments may undercount, the value is only used for ordering */
+		volatile long hits;
+
+		long pinnedHits;
+
+		long pinnedAccess;
+
+		Entry(final String key, final long size, final long lastAccess) {
+			this.key = key;
+			this.size = size;
+			this.lastAccess = lastAccess;
+		}
+
+		void pin(final EvictionPolicy policy) {
+			this.pinnedHits = policy == EvictionPolicy.LFU ? this.hits : 0;
+			this.pinnedAccess = this.lastAccess;
+		}
+	}
+}
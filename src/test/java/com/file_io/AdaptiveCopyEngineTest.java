@@ -0,0 +1,22 @@
+package com.file_io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+public class AdaptiveCopyEngineTest {
+
+	public static void main(String[] args) throws IOException {
+		File workDir = Files.createTempDirectory("copy-engine").toFile();
+		AdaptiveCopyEngine engine = new AdaptiveCopyEngine(new File(workDir, "copy-engine.properties"));
+		System.out.println(engine.calibrate(workDir));
+		System.out.println("bands=" + engine.getBands() + " reloaded=" + new AdaptiveCopyEngine(new File(workDir, "copy-engine.properties")).getBands());
+
+		File source = new File(workDir, "source.txt");
+		Files.write(source.toPath(), "adaptive copy".getBytes("UTF-8"));
+		System.out.println(engine.copy(source, new File(workDir, "a/b/target.txt")));
+		System.out.println(new String(Files.readAllBytes(new File(workDir, "a/b/target.txt").toPath()), "UTF-8"));
+
+		FileUtil.delete(workDir);
+	}
+}
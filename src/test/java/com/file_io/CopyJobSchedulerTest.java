@@ -0,0 +1,31 @@
+package com.file_io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+
+public class CopyJobSchedulerTest {
+
+	public static void main(String[] args) throws IOException {
+		File source = Files.createTempDirectory("copy-src").toFile();
+		File target = Files.createTempDirectory("copy-dst").toFile();
+
+		for (int i = 0; i < 200; i++) {
+			File file = FileUtil.createFile(new File(source, "small/" + (i % 10) + "/" + i + ".txt"));
+			Files.write(file.toPath(), ("file " + i).getBytes("UTF-8"));
+		}
+		try (RandomAccessFile large = new RandomAccessFile(FileUtil.createFile(new File(source, "large.bin")), "rw")) {
+			large.setLength(64L * 1024 * 1024);
+		}
+
+		CopyJobScheduler scheduler = new CopyJobScheduler();
+		scheduler.setProfile(target, new CopyJobScheduler.DeviceProfile(1024 * 1024, 4, 1));
+		scheduler.submit(source, target);
+		System.out.println(scheduler.execute());
+		System.out.println(FileUtil.sizeOfDirectory(source) == FileUtil.sizeOfDirectory(target));
+
+		FileUtil.delete(source);
+		FileUtil.delete(target);
+	}
+}
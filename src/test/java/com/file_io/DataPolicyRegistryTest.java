@@ -0,0 +1,87 @@
+package com.file_io;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.regex.Pattern;
+
+public class DataPolicyRegistryTest {
+
+	public static void main(String[] args) {
+		DataPolicyRegistry registry = DataPolicyRegistry.shared();
+		System.out.println(registry.getPolicies().values());
+
+		// the scanner agrees with the built-in regular expressions
+		String[] versions = { "5.5", "5.10", "2.6.3", "10.04", "5", "5.", ".5", "5.5.", "a.1", "1.2.3.4", "", "12.04" };
+		for (DataPolicy policy : DataPolicy.values()) {
+			for (String version : versions) {
+				boolean scanned = registry.get(policy.name()).isValidVersion(version);
+				if (scanned != policy.isValidVersion(version)) {
+					System.out.println("mismatch " + policy + " '" + version + "'");
+				}
+			}
+		}
+
+		// the scanner agrees with the equivalent regular expression on every short input
+		Properties tricky = new Properties();
+		tricky.setProperty("a", "T,#1");
+		tricky.setProperty("b", "T,##");
+		tricky.setProperty("c", "T,#.#1#");
+		tricky.setProperty("d", "T,v#-#");
+		tricky.setProperty("e", "T,1#0");
+		List<DataPolicyRegistry.Policy> policies = new ArrayList<>(registry.getPolicies().values());
+		policies.addAll(new DataPolicyRegistry(tricky).getPolicies().values());
+		int checked = 0;
+		for (DataPolicyRegistry.Policy policy : policies) {
+			String format = policy.toString().substring(policy.toString().indexOf(',') + 1);
+			if (format.startsWith("regex:")) {
+				continue;
+			}
+			StringBuilder regex = new StringBuilder();
+			for (char c : format.toCharArray()) {
+				regex.append(c == '#' ? "\\d+" : Pattern.quote(String.valueOf(c)));
+			}
+			for (String version : inputs("019." + format.replace("#", ""), 6)) {
+				checked++;
+				if (policy.isValidVersion(version) != Pattern.matches(regex.toString(), version)) {
+					System.out.println("mismatch " + policy + " '" + version + "'");
+				}
+			}
+		}
+		System.out.println(checked + " scanner checks");
+		System.out.println(DataPolicy.getSoftwareVersion(null) + " " + registry.get(null));
+
+		Properties properties = new Properties();
+		properties.setProperty("OpenSSL", "Library,regex:\\d+\\.\\d+\\.\\d+[a-z]?");
+		DataPolicyRegistry custom = new DataPolicyRegistry(properties);
+		System.out.println(custom.get("openssl").isValidVersion("1.0.2k") + " " + custom.get("OPENSSL").isValidVersion("1.0"));
+
+		long start = System.nanoTime();
+		int valid = 0;
+		for (int i = 0; i < 10_000_000; i++) {
+			if (registry.get("MySql").isValidVersion("5.5")) {
+				valid++;
+			}
+		}
+		System.out.println(valid + " validations in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+	}
+
+	/**
+	 * Every string over the alphabet up to the given length
+	 */
+	private static List<String> inputs(String alphabet, int maxLength) {
+		String chars = alphabet.chars().distinct().collect(StringBuilder::new, StringBuilder::appendCodePoint, StringBuilder::append).toString();
+		List<String> inputs = new ArrayList<>();
+		inputs.add("");
+		for (int from = 0; inputs.get(inputs.size() - 1).length() < maxLength;) {
+			int to = inputs.size();
+			for (int i = from; i < to; i++) {
+				for (char c : chars.toCharArray()) {
+					inputs.add(inputs.get(i) + c);
+				}
+			}
+			from = to;
+		}
+		return inputs;
+	}
+}
@@ -0,0 +1,34 @@
+package com.file_io;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+public class DirectBufferPoolTest {
+
+	public static void main(String[] args) throws IOException {
+		File workDir = Files.createTempDirectory("buffer-pool").toFile();
+		byte[] payload = new byte[100 * 1024];
+
+		for (int i = 0; i < 1000; i++) {
+			FileUtil.copyStreamToFile(new ByteArrayInputStream(payload), new File(workDir, "upload/" + (i % 10)), payload.length);
+		}
+		FileUtil.copyFileforJava(new ByteArrayInputStream(payload), new File(workDir, "legacy"));
+		System.out.println(new File(workDir, "legacy").length() == payload.length);
+		FileUtil.copyFileforJava(null, new File(workDir, "legacy"));
+		System.out.println(new File(workDir, "legacy").length() == 0);
+		System.out.println(DirectBufferPool.shared());
+
+		// an exhausted class allocates at once instead of waiting
+		DirectBufferPool pool = new DirectBufferPool(1);
+		DirectBufferPool.PooledBuffer first = pool.acquire(1024);
+		DirectBufferPool.PooledBuffer second = pool.acquire(1024);
+		pool.release(first);
+		pool.release(second);
+		pool.release(pool.acquire(1024));
+		System.out.println(pool);
+
+		FileUtil.delete(workDir);
+	}
+}
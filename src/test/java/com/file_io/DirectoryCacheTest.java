@@ -0,0 +1,35 @@
+package com.file_io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class DirectoryCacheTest {
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		File workDir = Files.createTempDirectory("directory-cache").toFile();
+		DirectoryCache directories = new DirectoryCache();
+
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		for (int i = 0; i < 800; i++) {
+			final File file = new File(workDir, "a/" + (i % 4) + "/b/" + (i % 8) + "/" + i + ".txt");
+			executor.execute(() -> {
+				try {
+					directories.createFile(file);
+				}
+				catch (IOException e) {
+					e.printStackTrace();
+				}
+			});
+		}
+		executor.shutdown();
+		executor.awaitTermination(1, TimeUnit.MINUTES);
+		System.out.println("cached directories: " + directories.size());
+		System.out.println("files: " + Files.walk(workDir.toPath()).filter(Files::isRegularFile).count());
+
+		FileUtil.delete(workDir);
+	}
+}
@@ -0,0 +1,39 @@
+package com.file_io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+public class DuplicateFinderTest {
+
+	public static void main(String[] args) throws IOException {
+		File workDir = Files.createTempDirectory("duplicates").toFile();
+		Random random = new Random(7);
+		byte[] payload = new byte[64 * 1024];
+		random.nextBytes(payload);
+		byte[] samePrefix = payload.clone();
+		samePrefix[samePrefix.length - 1]++;
+
+		for (int i = 0; i < 3; i++) {
+			Files.write(FileUtil.createFile(new File(workDir, "upload/" + i + "/report.bin")).toPath(), payload);
+		}
+		Files.write(FileUtil.createFile(new File(workDir, "archive/report-changed.bin")).toPath(), samePrefix);
+		Files.write(FileUtil.createFile(new File(workDir, "archive/a.txt")).toPath(), "same".getBytes("UTF-8"));
+		Files.write(FileUtil.createFile(new File(workDir, "archive/b.txt")).toPath(), "same".getBytes("UTF-8"));
+
+		DuplicateFinder finder = new DuplicateFinder();
+		DuplicateFinder.Report report = finder.find(workDir);
+		System.out.print(report);
+		// changed after the search, must be left alone
+		List<File> largest = report.getGroups().stream().max(Comparator.comparingInt(List::size)).get();
+		File changed = largest.get(largest.size() - 1);
+		changed.setLastModified(changed.lastModified() - 60000);
+		System.out.print(finder.replaceWithHardLinks(report));
+		System.out.print(finder.find(workDir));
+
+		FileUtil.delete(workDir);
+	}
+}
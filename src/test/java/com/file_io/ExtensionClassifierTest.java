@@ -0,0 +1,31 @@
+package com.file_io;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ExtensionClassifierTest {
+
+	public static void main(String[] args) {
+		String path = "D:\\io-nio\\apache-jmeter-5.0.zip";
+		int dot = PathNames.indexOfExtension(path, 0, path.length());
+		int name = PathNames.filenameStart(path, 0, path.length());
+		System.out.println(path.subSequence(name, path.length()) + " / " + path.subSequence(dot + 1, path.length()));
+		System.out.println(FileUtil.getFilename(path) + " / " + FileUtil.getFilenameExtension(path) + " / " + FileUtil.stripFilenameExtension(path));
+
+		List<String> paths = new ArrayList<>();
+		for (int i = 0; i < 1000000; i++) {
+			paths.add("/data/upload/" + i + (i % 3 == 0 ? ".JPG" : i % 3 == 1 ? ".png" : ".tar/README"));
+		}
+		ExtensionClassifier classifier = new ExtensionClassifier();
+		long start = System.nanoTime();
+		classifier.classifyAll(paths, null);
+		System.out.println(classifier.getCounts() + " in " + (System.nanoTime() - start) / 1000000 + " ms");
+
+		ExtensionClassifier bytes = new ExtensionClassifier();
+		byte[] utf8 = "/数据/报告.Pdf".getBytes(StandardCharsets.UTF_8);
+		System.out.println(bytes.classify(utf8, 0, utf8.length) == bytes.classify("a/b.PDF"));
+		classifier.merge(bytes);
+		System.out.println(classifier.getCounts());
+	}
+}
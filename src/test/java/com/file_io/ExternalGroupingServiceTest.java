@@ -0,0 +1,36 @@
+package com.file_io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+public class ExternalGroupingServiceTest {
+
+	public static void main(String[] args) throws IOException {
+		String input = new String(Files.readAllBytes(Paths.get("src/main/resources", "input.txt")), StandardCharsets.UTF_8);
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 20000; i++) {
+			sb.append(input).append('\n');
+		}
+
+		GroupingService groupingService = new GroupingService();
+		Map<String, List<Software>> grouped = groupingService.groupRecordsBySoftware(new DelimitedFileReader(new StringReader(sb.toString()), ",").readFile());
+		List<String> inMemory = groupingService.outDatedServers(grouped);
+
+		File spillDir = Files.createTempDirectory("spill").toFile();
+		ExternalGroupingService service = new ExternalGroupingService(spillDir, 64 * 1024, 8, 2);
+		try (Stream<Software> records = new DelimitedFileReader(new StringReader(sb.toString()), ",").streamFile()) {
+			List<String> external = service.outDatedServers(records, (name, versions) -> System.out.println(name + ": " + versions.size() + " versions"));
+			System.out.println(inMemory + " / " + external + " same=" + new HashSet<>(inMemory).equals(new HashSet<>(external)));
+		}
+		System.out.println("spill files left: " + spillDir.list().length);
+		FileUtil.delete(spillDir);
+	}
+}
@@ -0,0 +1,59 @@
+package com.file_io;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+public class FileOperationEventTest {
+
+	public static void main(String[] args) throws Exception {
+		File dir = Files.createTempDirectory("jfr").toFile();
+		File source = new File(dir, "source");
+
+		// not recording, only the counters move
+		work(dir, source);
+		System.out.println("copy counters: " + FileOperation.COPY.counters());
+
+		Path dump = new File(dir, "file-operations.jfr").toPath();
+		try (Recording recording = new Recording()) {
+			recording.enable("com.file_io.FileOperation");
+			recording.start();
+			work(dir, source);
+			recording.stop();
+			recording.dump(dump);
+		}
+		for (RecordedEvent event : RecordingFile.readAllEvents(dump)) {
+			System.out.println(event.getString("operation") + " " + event.getString("strategy") + " bytes=" + event.getLong("bytes")
+					+ " entries=" + event.getLong("entries") + " duration=" + event.getDuration().toNanos() / 1000 + "us " + event.getString("path"));
+		}
+
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		for (FileOperation operation : FileOperation.values()) {
+			ObjectName name = new ObjectName("com.file_io:type=FileOperations,name=" + operation.name().toLowerCase(Locale.ROOT));
+			System.out.println(name + " count=" + server.getAttribute(name, "Count") + " bytes=" + server.getAttribute(name, "Bytes")
+					+ " entries=" + server.getAttribute(name, "Entries"));
+		}
+		FileUtil.delete(dir);
+	}
+
+	private static void work(File dir, File source) throws IOException {
+		for (int i = 0; i < 20; i++) {
+			Files.write(FileUtil.createFile(new File(source, "d" + (i % 4) + "/f" + i + ".txt")).toPath(), new byte[1024 * i]);
+		}
+		FileUtil.copyDirectiory(source, new File(dir, "copy"));
+		FileUtil.move(new File(dir, "copy"), new File(dir, "moved"));
+		System.out.println("size " + FileUtil.sizeOfDirectory(new File(dir, "moved")));
+		FileUtil.delete(new File(dir, "moved"));
+		FileUtil.delete(source);
+	}
+}
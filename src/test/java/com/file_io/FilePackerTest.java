@@ -0,0 +1,68 @@
+package com.file_io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+public class FilePackerTest {
+
+	public static void main(String[] args) throws IOException {
+		File workDir = Files.createTempDirectory("packer").toFile();
+		File source = new File(workDir, "source");
+		for (int i = 0; i < 1000; i++) {
+			File file = FileUtil.createFile(new File(source, (i % 20) + "/" + i + ".txt"));
+			Files.write(file.toPath(), ("member " + i).getBytes(StandardCharsets.UTF_8));
+		}
+		Files.write(new File(source, "large.bin").toPath(), new byte[3 * 1024 * 1024]);
+		FileUtil.createDirectoryRecursively(new File(source, "empty").getPath());
+
+		FilePacker packer = new FilePacker(4);
+		File packFile = new File(workDir, "source.fpak");
+		long start = System.nanoTime();
+		System.out.println("packed " + packer.pack(source, packFile) + " members in " + (System.nanoTime() - start) / 1000000 + " ms");
+
+		try (PackArchive archive = new PackArchive(packFile)) {
+			ByteBuffer member = archive.read("7/907.txt");
+			byte[] bytes = new byte[member.remaining()];
+			member.get(bytes);
+			System.out.println(new String(bytes, StandardCharsets.UTF_8));
+			// members over 2GB can only be streamed, the same path works for any size
+			File streamed = new File(workDir, "large.streamed");
+			try (FileChannel out = FileChannel.open(streamed.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+				System.out.println(archive.transferTo(archive.getEntry("large.bin"), out) == streamed.length());
+			}
+		}
+
+		// a corrupt header or index fails with an IOException
+		byte[] pack = Files.readAllBytes(packFile.toPath());
+		byte[] badVersion = pack.clone();
+		badVersion[7] = 9;
+		byte[] badIndex = pack.clone();
+		int indexOffset = (int) ByteBuffer.wrap(pack, pack.length - PackArchive.TRAILER_SIZE, 8).getLong();
+		int pathLength = ByteBuffer.wrap(pack).getShort(indexOffset + 4) & 0xffff;
+		// length of the first member
+		ByteBuffer.wrap(badIndex).putLong(indexOffset + 4 + 2 + pathLength + 8, Long.MAX_VALUE);
+		for (byte[] corrupt : new byte[][] { badVersion, badIndex, Arrays.copyOf(pack, pack.length - 100) }) {
+			File corruptFile = new File(workDir, "corrupt.fpak");
+			Files.write(corruptFile.toPath(), corrupt);
+			try (PackArchive archive = new PackArchive(corruptFile)) {
+				System.out.println("corrupt pack accepted");
+			}
+			catch (IOException e) {
+				System.out.println(e.getMessage());
+			}
+		}
+
+		File target = new File(workDir, "target");
+		start = System.nanoTime();
+		System.out.println("unpacked " + packer.unpack(packFile, target) + " members in " + (System.nanoTime() - start) / 1000000 + " ms");
+		System.out.println(FileUtil.sizeOfDirectory(source) == FileUtil.sizeOfDirectory(target) && new File(target, "empty").isDirectory());
+
+		FileUtil.delete(workDir);
+	}
+}
@@ -0,0 +1,35 @@
+package com.file_io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.List;
+
+public class InventoryIngestionServiceTest {
+
+	public static void main(String[] args) throws IOException {
+		List<String> lines = Files.readAllLines(Paths.get("src/main/resources", "input.txt"), StandardCharsets.UTF_8);
+
+		// one export per data center
+		File dir = Files.createTempDirectory("inventories").toFile();
+		int sources = 3;
+		for (int i = 0; i < sources; i++) {
+			Files.write(new File(dir, "dc" + i + ".txt").toPath(), lines.subList(i * lines.size() / sources, (i + 1) * lines.size() / sources));
+		}
+
+		InventoryIngestionService service = new InventoryIngestionService(",", 2);
+		InventoryIngestionService.Report report = service.ingest(dir);
+		System.out.println(report.getRecords());
+		System.out.print(report);
+
+		GroupingService groupingService = new GroupingService();
+		List<String> serial = groupingService.outDatedServers(groupingService.groupRecordsBySoftware(
+				new DelimitedFileReader(new StringReader(String.join("\n", lines)), ",").readFile()));
+		System.out.println(serial + " / " + report.getOutDatedServers() + " same=" + new HashSet<>(serial).equals(new HashSet<>(report.getOutDatedServers())));
+		FileUtil.delete(dir);
+	}
+}
@@ -0,0 +1,34 @@
+package com.file_io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+public class ParallelFileCopierTest {
+
+	public static void main(String[] args) throws IOException {
+		File workDir = Files.createTempDirectory("parallel-copy").toFile();
+		File source = new File(workDir, "large.bin");
+		byte[] chunk = new byte[1024 * 1024];
+		new Random(42).nextBytes(chunk);
+		try (RandomAccessFile raf = new RandomAccessFile(source, "rw")) {
+			for (int i = 0; i < 100; i++) {
+				raf.write(chunk);
+			}
+			raf.write(chunk, 0, 12345);
+		}
+
+		for (ParallelFileCopier.Mode mode : ParallelFileCopier.Mode.values()) {
+			File target = new File(workDir, "copy/" + mode + ".bin");
+			long start = System.nanoTime();
+			long copied = new ParallelFileCopier(4, 16L * 1024 * 1024, 2, mode).copy(source, target);
+			System.out.println(mode + ": " + copied + " bytes in " + (System.nanoTime() - start) / 1000000 + " ms, identical="
+					+ Arrays.equals(Files.readAllBytes(source.toPath()), Files.readAllBytes(target.toPath())));
+		}
+
+		FileUtil.delete(workDir);
+	}
+}
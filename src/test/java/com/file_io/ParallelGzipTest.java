@@ -0,0 +1,55 @@
+package com.file_io;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+
+public class ParallelGzipTest {
+
+	public static void main(String[] args) throws IOException {
+		File workDir = Files.createTempDirectory("parallel-gzip").toFile();
+		File log = new File(workDir, "app.log");
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 200000; i++) {
+			sb.append("2019-01-01 00:00:").append(i % 60).append(" INFO request ").append(i).append(" served\n");
+		}
+		Files.write(log.toPath(), sb.toString().getBytes(StandardCharsets.UTF_8));
+
+		ParallelGzip gzip = new ParallelGzip();
+		File compressed = new File(workDir, "out/app.log.gz");
+		long start = System.nanoTime();
+		gzip.compress(log, compressed);
+		System.out.println(log.length() + " -> " + compressed.length() + " bytes in " + (System.nanoTime() - start) / 1000000 + " ms");
+
+		// 标准 gzip 读取 | Standard gzip reader
+		byte[] original = Files.readAllBytes(log.toPath());
+		try (InputStream in = new GZIPInputStream(new FileInputStream(compressed))) {
+			byte[] buf = new byte[original.length];
+			int read = 0;
+			for (int n; (n = in.read(buf, read, buf.length - read)) > 0;) {
+				read += n;
+			}
+			System.out.println("GZIPInputStream identical=" + (read == original.length && Arrays.equals(buf, original)));
+		}
+
+		File restored = new File(workDir, "restored.log");
+		gzip.decompress(compressed, restored);
+		System.out.println("parallel identical=" + Arrays.equals(original, Files.readAllBytes(restored.toPath())));
+
+		// 成员大于本实例的块大小,逐个串行解压 | Members larger than this instance's blocks are inflated one by one serially
+		new ParallelGzip(2, 64 * 1024, Deflater.DEFAULT_COMPRESSION).decompress(compressed, restored);
+		System.out.println("small block identical=" + Arrays.equals(original, Files.readAllBytes(restored.toPath())));
+
+		File archive = new File(workDir, "dir.fpak.gz");
+		gzip.archive(new File(workDir, "out"), archive);
+		System.out.println("extracted " + gzip.extract(archive, new File(workDir, "extracted")) + " members");
+
+		FileUtil.delete(workDir);
+	}
+}
@@ -0,0 +1,260 @@
+package com.file_io;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Load harness for {@link UploadExample}: starts the server on a free local port and posts multipart uploads at it.
+ * <p>
+ * Arguments are {@code key=value} pairs, all optional:
+ * </p>
+ * <pre>
+ *   concurrency=8                  client threads
+ *   requests=2000                  measured uploads
+ *   warmup=200                     uploads before measuring
+ *   rate=0                         target uploads per second, 0 for as fast as possible
+ *   sizes=4KB:60,64KB:30,1MB:10    upload sizes with their weights, sizes as {@link FileUtil#toFileSize(String)} reads them
+ *   seed=42                        seed of the size sequence, so runs can be compared
+ * </pre>
+ * <p>
+ * With a target rate every upload has an intended start time and its latency is measured from there, so a stalled
+ * server shows up in the percentiles instead of silently lowering the offered load.
+ * </p>
+ */
+public class UploadLoadHarness {
+
+	private static final String BOUNDARY = "----UploadLoadHarness7MA4YWxkTrZu0gW";
+
+	// Spark's Jetty speaks HTTP/1.1 only, skip the h2c upgrade attempt
+	private static final HttpClient CLIENT = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+	public static void main(String[] args) throws Exception {
+		Map<String, String> options = new HashMap<>();
+		for (String arg : args) {
+			int eq = arg.indexOf('=');
+			options.put(arg.substring(0, eq), arg.substring(eq + 1));
+		}
+		int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "8"));
+		int requests = Integer.parseInt(options.getOrDefault("requests", "2000"));
+		int warmup = Integer.parseInt(options.getOrDefault("warmup", "200"));
+		double rate = Double.parseDouble(options.getOrDefault("rate", "0"));
+		long seed = Long.parseLong(options.getOrDefault("seed", "42"));
+		SizeDistribution sizes = new SizeDistribution(options.getOrDefault("sizes", "4KB:60,64KB:30,1MB:10"));
+
+		File uploadDir = Files.createTempDirectory("upload-load").toFile();
+		int port;
+		try (ServerSocket socket = new ServerSocket(0)) {
+			port = socket.getLocalPort();
+		}
+		UploadExample.start(port, uploadDir);
+		spark.Spark.awaitInitialization();
+		URI url = URI.create("http://localhost:" + port + "/");
+
+		try {
+			System.out.println("warmup: " + run(url, concurrency, warmup, 0, sizes, new Random(seed ^ 0x5DEECE66DL)).summary());
+			FileOperationCounters copies = FileOperation.COPY.counters();
+			long copyNanos = copies.getTotalTimeNanos();
+			long copyCount = copies.getCount();
+
+			Result result = run(url, concurrency, requests, rate, sizes, new Random(seed));
+			System.out.println("concurrency=" + concurrency + " requests=" + requests + " rate=" + (rate > 0 ? rate + "/s" : "unbounded")
+					+ " sizes=" + sizes);
+			System.out.println(result.summary());
+			System.out.println(result.percentiles());
+			if (!result.errors.isEmpty()) {
+				System.out.println("errors: " + new TreeMap<>(result.errors));
+			}
+			long copied = copies.getCount() - copyCount;
+			if (copied > 0) {
+				System.out.printf("server copy: %d files, %.1f us avg%n", copied, (copies.getTotalTimeNanos() - copyNanos) / 1000.0 / copied);
+			}
+		}
+		finally {
+			spark.Spark.stop();
+			FileUtil.delete(uploadDir);
+		}
+	}
+
+	private static Result run(URI url, int concurrency, int requests, double rate, SizeDistribution sizes, Random random) throws Exception {
+		// the size sequence is drawn up front so it does not depend on thread scheduling
+		int[] sequence = new int[requests];
+		for (int i = 0; i < requests; i++) {
+			sequence[i] = sizes.next(random);
+		}
+		Result result = new Result(requests);
+		AtomicInteger next = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+		long start = System.nanoTime();
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int t = 0; t < concurrency; t++) {
+				futures.add(executor.submit(() -> {
+					for (int i; (i = next.getAndIncrement()) < requests;) {
+						long intended = rate > 0 ? start + (long) (i * 1_000_000_000L / rate) : System.nanoTime();
+						long wait = intended - System.nanoTime();
+						if (wait > 0) {
+							TimeUnit.NANOSECONDS.sleep(wait);
+						}
+						byte[] payload = sizes.payload(sequence[i]);
+						try {
+							int status = upload(url, "load-" + i + ".bin", payload);
+							if (status == 200) {
+								result.succeeded.increment();
+								result.bytes.add(payload.length);
+							}
+							else {
+								result.error("HTTP " + status);
+							}
+						}
+						catch (IOException e) {
+							result.error(e.getClass().getSimpleName());
+						}
+						result.latencies[i] = System.nanoTime() - intended;
+					}
+					return null;
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		}
+		finally {
+			executor.shutdownNow();
+		}
+		result.elapsed = System.nanoTime() - start;
+		return result;
+	}
+
+	private static int upload(URI url, String filename, byte[] payload) throws IOException, InterruptedException {
+		byte[] head = ("--" + BOUNDARY + "\r\n" + "Content-Disposition: form-data; name=\"uploaded_file\"; filename=\"" + filename + "\"\r\n"
+				+ "Content-Type: application/octet-stream\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+		byte[] tail = ("\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+
+		// the parts are sent as they are with a fixed Content-Length, the payload is never copied
+		HttpRequest request = HttpRequest.newBuilder(url)
+				.header("Content-Type", "multipart/form-data; boundary=" + BOUNDARY)
+				.POST(HttpRequest.BodyPublishers.fromPublisher(HttpRequest.BodyPublishers.ofByteArrays(Arrays.asList(head, payload, tail)),
+						(long) head.length + payload.length + tail.length))
+				.build();
+		return CLIENT.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+	}
+
+	/**
+	 * Weighted upload sizes, one shared random payload per size
+	 */
+	private static final class SizeDistribution {
+
+		private final String spec;
+
+		private final int[] sizes;
+
+		private final int[] cumulativeWeights;
+
+		private final Map<Integer, byte[]> payloads = new HashMap<>();
+
+		SizeDistribution(String spec) {
+			this.spec = spec;
+			String[] entries = spec.split(",");
+			this.sizes = new int[entries.length];
+			this.cumulativeWeights = new int[entries.length];
+			int total = 0;
+			Random random = new Random(0);
+			for (int i = 0; i < entries.length; i++) {
+				String[] parts = entries[i].trim().split(":");
+				this.sizes[i] = (int) FileUtil.toFileSize(parts[0]);
+				total += parts.length > 1 ? Integer.parseInt(parts[1]) : 1;
+				this.cumulativeWeights[i] = total;
+				byte[] payload = new byte[this.sizes[i]];
+				random.nextBytes(payload);
+				this.payloads.put(this.sizes[i], payload);
+			}
+		}
+
+		int next(Random random) {
+			int pick = random.nextInt(this.cumulativeWeights[this.cumulativeWeights.length - 1]);
+			for (int i = 0;; i++) {
+				if (pick < this.cumulativeWeights[i]) {
+					return this.sizes[i];
+				}
+			}
+		}
+
+		byte[] payload(int size) {
+			return this.payloads.get(size);
+		}
+
+		@Override
+		public String toString() {
+			return this.spec;
+		}
+	}
+
+	private static final class Result {
+
+		final long[] latencies;
+
+		final LongAdder succeeded = new LongAdder();
+
+		final LongAdder bytes = new LongAdder();
+
+		final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+
+		long elapsed;
+
+		Result(int requests) {
+			this.latencies = new long[requests];
+		}
+
+		void error(String kind) {
+			this.errors.computeIfAbsent(kind, k -> new LongAdder()).increment();
+		}
+
+		/**
+		 * Throughput counts successful uploads only, failures are reported next to it
+		 */
+		String summary() {
+			long ok = this.succeeded.sum();
+			long failed = this.errors.values().stream().mapToLong(LongAdder::sum).sum();
+			double seconds = this.elapsed / 1e9;
+			return String.format("%d uploads in %.2f s: %d ok, %.1f uploads/s, %.1f MB/s; %d errors (%.2f%%)", this.latencies.length, seconds,
+					ok, ok / seconds, this.bytes.sum() / seconds / (1024 * 1024), failed,
+					this.latencies.length == 0 ? 0 : 100.0 * failed / this.latencies.length);
+		}
+
+		String percentiles() {
+			long[] sorted = this.latencies.clone();
+			Arrays.sort(sorted);
+			if (sorted.length == 0) {
+				return "no latencies";
+			}
+			StringBuilder sb = new StringBuilder("latency ms:");
+			for (double p : new double[] { 50, 90, 99, 99.9 }) {
+				int index = (int) Math.min(sorted.length - 1, Math.ceil(p / 100 * sorted.length) - 1);
+				sb.append(String.format(" p%s=%.2f", p == (int) p ? String.valueOf((int) p) : String.valueOf(p), sorted[Math.max(0, index)] / 1e6));
+			}
+			sb.append(String.format(" max=%.2f", sorted[sorted.length - 1] / 1e6));
+			return sb.toString();
+		}
+	}
+}
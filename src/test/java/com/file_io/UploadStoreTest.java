@@ -0,0 +1,59 @@
+package com.file_io;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+public class UploadStoreTest {
+
+	public static void main(String[] args) throws IOException {
+		for (UploadStore.EvictionPolicy policy : UploadStore.EvictionPolicy.values()) {
+			File root = Files.createTempDirectory("upload-store").toFile();
+			UploadStore store = new UploadStore(root, 1024 * 1024, policy);
+
+			// a small hot set read between writes, everything else is written once
+			List<String> hot = new ArrayList<>();
+			List<String> cold = new ArrayList<>();
+			for (int i = 0; i < 500; i++) {
+				String key = store.store(new ByteArrayInputStream(new byte[10 * 1024]), 10 * 1024, "image" + i + ".png");
+				(i < 10 ? hot : cold).add(key);
+				for (String h : hot) {
+					store.open(h);
+				}
+			}
+			long hotKept = hot.stream().filter(k -> store.open(k) != null).count();
+			long coldKept = cold.stream().filter(k -> store.open(k) != null).count();
+			System.out.println(policy + ": " + store.size() + " files, " + store.getTotalBytes() + " bytes, hot kept " + hotKept + "/10, cold kept "
+					+ coldKept + "/490");
+			System.out.println("  " + store.path(hot.get(0)));
+
+			// a restart indexes what is on disk
+			UploadStore reopened = new UploadStore(root, 1024 * 1024, policy);
+			System.out.println("  reopened: " + reopened.size() + " files, " + reopened.getTotalBytes() + " bytes, on disk "
+					+ FileUtil.sizeOfDirectory(root));
+			FileUtil.delete(root);
+		}
+
+		// files saved flat by earlier versions are moved into the shards and served under their old name
+		File root = Files.createTempDirectory("upload-store").toFile();
+		Files.write(new File(root, "2851303328019340139").toPath(), new byte[4311]);
+		UploadStore store = new UploadStore(root, 64 * 1024, UploadStore.EvictionPolicy.LRU);
+		System.out.println("legacy: " + store.size() + " files, " + store.getTotalBytes() + " bytes, " + store.open("2851303328019340139"));
+
+		// an upload larger than the cap is rejected, one close to the cap survives its own eviction pass
+		try {
+			store.store(new ByteArrayInputStream(new byte[65 * 1024]), -1, "huge.bin");
+			System.out.println("oversized upload accepted");
+		}
+		catch (IllegalArgumentException e) {
+			System.out.println(e.getMessage());
+		}
+		String big = store.store(new ByteArrayInputStream(new byte[63 * 1024]), 63 * 1024, "big.bin");
+		System.out.println("big kept " + (store.open(big) != null) + ", " + store.size() + " files, " + store.getTotalBytes() + " bytes, on disk "
+				+ FileUtil.sizeOfDirectory(root));
+		FileUtil.delete(root);
+	}
+}